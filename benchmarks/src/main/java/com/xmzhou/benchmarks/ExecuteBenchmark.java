@@ -0,0 +1,84 @@
+package com.xmzhou.benchmarks;
+
+import com.xmzhou.util.HttpUtil;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end throughput and latency of {@code execute()} and {@code executeAsync()} against a local
+ * {@link MockWebServer}. Use {@code -bm thrpt} or {@code -bm sample} to switch between throughput and
+ * latency percentiles, and {@code -prof gc} for allocations per request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExecuteBenchmark {
+    private static final int BATCH = 16;
+
+    @Param({"64", "16384"})
+    public int responseSize;
+
+    private MockWebServer server;
+    private String url;
+
+    @Setup
+    public void setUp() throws IOException {
+        HttpUtil.setLogLevel("INFO");
+        server = new MockWebServer();
+        MockResponse response = new MockResponse().setBody(Payloads.json(responseSize));
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return response;
+            }
+        });
+        server.start();
+        url = server.url("/items").toString();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Benchmark
+    public Response execute() throws Exception {
+        return HttpUtil.get(url)
+                .param("page", "1")
+                .execute();
+    }
+
+    @Benchmark
+    public Response executeAsync() throws Exception {
+        return HttpUtil.get(url)
+                .param("page", "1")
+                .executeAsync()
+                .get();
+    }
+
+    /**
+     * Keeps {@value #BATCH} async calls in flight at once, bounded by the dispatcher's per-host limit.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void executeAsyncBatch() throws Exception {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[BATCH];
+        for (int i = 0; i < BATCH; i++) {
+            futures[i] = HttpUtil.get(url)
+                    .param("page", String.valueOf(i))
+                    .executeAsync();
+        }
+        CompletableFuture.allOf(futures).get();
+    }
+}
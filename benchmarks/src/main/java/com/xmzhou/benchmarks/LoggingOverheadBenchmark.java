@@ -0,0 +1,103 @@
+package com.xmzhou.benchmarks;
+
+import com.moczul.ok2curl.CurlInterceptor;
+import com.xmzhou.util.HttpUtil;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.logging.HttpLoggingInterceptor;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request cost of the logging pipeline while DEBUG is disabled.
+ * <p>
+ * {@code legacyPipeline} rebuilds the previous client setup: a BODY-level {@link HttpLoggingInterceptor} and an
+ * unconditional {@link CurlInterceptor}, whose output is only dropped at the final {@code LOG.debug} call.
+ * {@code httpUtil} goes through the current {@link HttpUtil} client. Both post and receive a body of
+ * {@code bodySize} bytes against a local {@link MockWebServer}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoggingOverheadBenchmark {
+    private static final Logger LOG = LoggerFactory.getLogger(HttpUtil.class);
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+
+    @Param({"0", "16384", "1048576"})
+    public int bodySize;
+
+    private MockWebServer server;
+    private String url;
+    private String body;
+    private OkHttpClient legacyClient;
+
+    @Setup
+    public void setUp() throws IOException {
+        HttpUtil.setLogLevel("INFO");
+        body = Payloads.json(bodySize);
+        server = new MockWebServer();
+        MockResponse response = new MockResponse().setBody(body);
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return response;
+            }
+        });
+        server.start();
+        url = server.url("/log").toString();
+
+        HttpLoggingInterceptor loggingInterceptor = new HttpLoggingInterceptor(s -> {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(s);
+            }
+        });
+        loggingInterceptor.setLevel(HttpLoggingInterceptor.Level.BODY);
+        legacyClient = new OkHttpClient.Builder()
+                .addInterceptor(loggingInterceptor)
+                .addNetworkInterceptor(new CurlInterceptor(s -> {
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug(s);
+                    }
+                }))
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        server.shutdown();
+        legacyClient.dispatcher().executorService().shutdown();
+        legacyClient.connectionPool().evictAll();
+    }
+
+    @Benchmark
+    public byte[] legacyPipeline() throws IOException {
+        Request request = new Request.Builder()
+                .url(url)
+                .post(RequestBody.create(JSON, body))
+                .build();
+        try (Response response = legacyClient.newCall(request).execute()) {
+            return response.body().bytes();
+        }
+    }
+
+    @Benchmark
+    public Response httpUtil() throws Exception {
+        return HttpUtil.post(url)
+                .body(body)
+                .execute();
+    }
+}
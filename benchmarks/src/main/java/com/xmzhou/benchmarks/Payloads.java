@@ -0,0 +1,26 @@
+package com.xmzhou.benchmarks;
+
+/**
+ * Test payloads shared by the benchmarks.
+ */
+final class Payloads {
+    private Payloads() {
+    }
+
+    /**
+     * Returns a JSON array of roughly {@code size} bytes.
+     */
+    static String json(int size) {
+        if (size <= 0) {
+            return "";
+        }
+        StringBuilder builder = new StringBuilder(size + 64).append('[');
+        for (int i = 0; builder.length() < size - 1; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append("{\"id\":").append(i).append(",\"name\":\"item-").append(i).append("\",\"active\":true}");
+        }
+        return builder.append(']').toString();
+    }
+}
@@ -0,0 +1,50 @@
+package com.xmzhou.benchmarks;
+
+import com.xmzhou.util.RateLimiter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of taking a {@link RateLimiter} permit when many threads share one key, i.e. the contention on its
+ * compare-and-set. The rate is high enough that permits are always available. Use {@code -t} to vary the
+ * thread count.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class RateLimiterBenchmark {
+    private RateLimiter limiter;
+
+    @Setup
+    public void setUp() {
+        limiter = RateLimiter.builder()
+                .permitsPerSecond(1e9)
+                .burst(1_000_000)
+                .build();
+    }
+
+    @Benchmark
+    public boolean tryAcquireSharedKey() {
+        return limiter.tryAcquire("api.example.com");
+    }
+
+    @Benchmark
+    public boolean tryAcquirePerThreadKey(ThreadKey key) {
+        return limiter.tryAcquire(key.name);
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadKey {
+        String name;
+
+        @Setup
+        public void setUp() {
+            name = Thread.currentThread().getName();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.xmzhou.benchmarks;
+
+import com.xmzhou.util.HttpUtil;
+import okhttp3.Request;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of building requests with {@link HttpUtil.RequestBuilder}, without any I/O.
+ * <p>
+ * Run with {@code -prof gc} to see the allocations per request next to the timings.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestBuilderBenchmark {
+    private static final String URL = "http://localhost:8080/api/v1/items?sort=asc";
+
+    @Param({"1", "10", "30"})
+    public int paramCount;
+
+    private String[] keys;
+    private String[] values;
+    private Map<String, String> params;
+    private Map<String, String> headers;
+    private HttpUtil.RequestBuilder prepared;
+    private MethodHandle buildRequest;
+
+    @Setup
+    public void setUp() throws ReflectiveOperationException {
+        HttpUtil.setLogLevel("INFO");
+        keys = new String[paramCount];
+        values = new String[paramCount];
+        params = new LinkedHashMap<>();
+        headers = new LinkedHashMap<>();
+        for (int i = 0; i < paramCount; i++) {
+            keys[i] = "key" + i;
+            values[i] = "value " + i;
+            params.put(keys[i], values[i]);
+            headers.put("X-Header-" + i, values[i]);
+        }
+        prepared = HttpUtil.get(URL).params(params).header(headers);
+        // buildRequest() is private; a method handle keeps the reflective call out of the measurement
+        Method method = HttpUtil.RequestBuilder.class.getDeclaredMethod("buildRequest");
+        method.setAccessible(true);
+        buildRequest = MethodHandles.lookup().unreflect(method);
+    }
+
+    @Benchmark
+    public HttpUtil.RequestBuilder construct() {
+        return HttpUtil.get(URL);
+    }
+
+    @Benchmark
+    public HttpUtil.RequestBuilder paramChain() {
+        HttpUtil.RequestBuilder builder = HttpUtil.get(URL);
+        for (int i = 0; i < paramCount; i++) {
+            builder.param(keys[i], values[i]);
+        }
+        return builder;
+    }
+
+    @Benchmark
+    public HttpUtil.RequestBuilder params() {
+        return HttpUtil.get(URL).params(params);
+    }
+
+    @Benchmark
+    public HttpUtil.RequestBuilder headerChain() {
+        return HttpUtil.get(URL).header(headers);
+    }
+
+    @Benchmark
+    public Request buildRequest() throws Throwable {
+        return (Request) buildRequest.invoke(prepared);
+    }
+
+    /**
+     * The whole client-side cost of a request with {@code paramCount} query parameters added one by one.
+     */
+    @Benchmark
+    public Request paramChainAndBuild() throws Throwable {
+        HttpUtil.RequestBuilder builder = HttpUtil.get(URL);
+        for (int i = 0; i < paramCount; i++) {
+            builder.param(keys[i], values[i]);
+        }
+        return (Request) buildRequest.invoke(builder);
+    }
+}
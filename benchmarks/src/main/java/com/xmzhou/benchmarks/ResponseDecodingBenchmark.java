@@ -0,0 +1,84 @@
+package com.xmzhou.benchmarks;
+
+import com.github.luben.zstd.Zstd;
+import com.xmzhou.util.HttpUtil;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end time of a GET whose JSON response is sent uncompressed, gzipped or zstd-compressed by a local
+ * {@link MockWebServer}, and decoded by HttpUtil. The response size on the wire is printed once per trial, so the
+ * decoding CPU can be weighed against the bytes saved. Brotli is not measured: {@code org.brotli:dec} has no
+ * encoder to prepare the response with.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseDecodingBenchmark {
+    @Param({"identity", "gzip", "zstd"})
+    public String encoding;
+
+    @Param({"16384", "1048576"})
+    public int responseSize;
+
+    private MockWebServer server;
+    private String url;
+
+    @Setup
+    public void setUp() throws IOException {
+        HttpUtil.setLogLevel("INFO");
+        byte[] json = Payloads.json(responseSize).getBytes(StandardCharsets.UTF_8);
+        Buffer body = new Buffer();
+        if ("gzip".equals(encoding)) {
+            try (BufferedSink sink = Okio.buffer(new GzipSink(body))) {
+                sink.write(json);
+            }
+        } else if ("zstd".equals(encoding)) {
+            body.write(Zstd.compress(json));
+        } else {
+            body.write(json);
+        }
+        System.out.println("response bytes on the wire: " + body.size() + " of " + json.length);
+
+        MockResponse response = new MockResponse().setBody(body);
+        if (!"identity".equals(encoding)) {
+            response.setHeader("Content-Encoding", encoding);
+        }
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return response;
+            }
+        });
+        server.start();
+        url = server.url("/items").toString();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Benchmark
+    public String get() throws Exception {
+        return HttpUtil.get(url)
+                .execute()
+                .body()
+                .string();
+    }
+}
@@ -0,0 +1,102 @@
+package com.xmzhou.benchmarks;
+
+import com.xmzhou.util.HttpClientConfig;
+import com.xmzhou.util.HttpClientProfile;
+import com.xmzhou.util.HttpUtil;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code calls} concurrent slow {@code executeAsync()} calls, on the dispatcher versus on virtual threads
+ * ({@link HttpClientConfig.Builder#asyncExecutor}). Both clients allow all calls to run at once, so the
+ * difference is the cost of the threads parked in blocking reads. The peak number of platform threads,
+ * including the server's connection threads in both modes, is printed after each iteration.
+ * <p>
+ * The {@code virtual} mode needs JDK 21 or later.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class VirtualThreadBenchmark {
+    @Param({"dispatcher", "virtual"})
+    public String mode;
+
+    @Param({"10000"})
+    public int calls;
+
+    @Param({"100"})
+    public int delayMillis;
+
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private MockWebServer server;
+    private String url;
+    private ExecutorService virtualThreads;
+    private HttpClientProfile client;
+
+    @Setup
+    public void setUp() throws IOException {
+        HttpUtil.setLogLevel("INFO");
+        server = new MockWebServer();
+        MockResponse response = new MockResponse()
+                .setBody("{}")
+                .setHeadersDelay(delayMillis, TimeUnit.MILLISECONDS);
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return response;
+            }
+        });
+        server.start();
+        url = server.url("/slow").toString();
+
+        HttpClientConfig.Builder config = HttpClientConfig.builder()
+                .maxIdleConnections(calls)
+                .maxRequests(calls)
+                .maxRequestsPerHost(calls);
+        if ("virtual".equals(mode)) {
+            virtualThreads = HttpUtil.virtualThreadExecutor();
+            config.asyncExecutor(virtualThreads);
+        }
+        client = HttpUtil.client("benchmark-" + mode, config.build());
+    }
+
+    @Setup(Level.Iteration)
+    public void resetPeak() {
+        threads.resetPeakThreadCount();
+    }
+
+    @TearDown(Level.Iteration)
+    public void printPeak() {
+        System.out.println("peak platform threads: " + threads.getPeakThreadCount());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if (virtualThreads != null) {
+            virtualThreads.shutdown();
+        }
+        server.shutdown();
+    }
+
+    @Benchmark
+    public void slowCalls() throws Exception {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[calls];
+        for (int i = 0; i < calls; i++) {
+            futures[i] = client.get(url).executeAsync();
+        }
+        CompletableFuture.allOf(futures).get();
+    }
+}
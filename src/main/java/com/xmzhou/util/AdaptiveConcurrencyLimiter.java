@@ -0,0 +1,260 @@
+package com.xmzhou.util;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <h3> Adaptive per-host concurrency limit.</h3>
+ *
+ * <p>
+ * Adjusts how many calls may be in flight to each host from the round-trip times of completed calls, using
+ * additive increase / multiplicative decrease. A call counts as a sign of overload if it fails, is answered with
+ * 429 or 503, or takes longer than {@code rttTolerance} times the lowest recently observed round-trip time, i.e. the
+ * host is queueing. Overload multiplies the limit by {@code backoffRatio}; any other call raises it by one while
+ * at least half of the limit is in use.
+ * </p>
+ * <p>
+ * Calls beyond the limit fail with a {@link ConcurrencyLimitExceededException}, or wait up to
+ * {@code maxWaitMillis} for a slot. Waiting holds the calling thread, which for {@code executeAsync()} is a
+ * dispatcher thread.
+ * </p>
+ */
+public class AdaptiveConcurrencyLimiter implements Interceptor {
+    private static final Logger LOG = LoggerFactory.getLogger(HttpUtil.class);
+    private static final String ALL_HOSTS = "";
+    /**
+     * Number of samples after which the minimum round-trip time is measured afresh.
+     */
+    private static final int RTT_RESET_SAMPLES = 1000;
+
+    private int initialLimit = 20;
+    private int minLimit = 1;
+    private int maxLimit = 200;
+    private double backoffRatio = 0.9;
+    private double rttTolerance = 2.0;
+    private long maxWaitMillis;
+    private boolean perHost = true;
+
+    private final ConcurrentMap<String, Limit> limits = new ConcurrentHashMap<>();
+    private final LongAdder rejectedCalls = new LongAdder();
+
+    /**
+     * Returns the current concurrency limit for the given host.
+     *
+     * @param host the host name
+     * @return the concurrency limit
+     */
+    public int limit(String host) {
+        return hostLimit(host).limit();
+    }
+
+    /**
+     * Returns the number of calls currently in flight to the given host.
+     *
+     * @param host the host name
+     * @return the in-flight call count
+     */
+    public int inFlight(String host) {
+        return hostLimit(host).inFlight();
+    }
+
+    /**
+     * Returns the number of calls rejected because their host was at its limit.
+     *
+     * @return the rejected call count
+     */
+    public long getRejectedCalls() {
+        return rejectedCalls.sum();
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        Limit limit = hostLimit(request.url().host());
+        limit.acquire();
+        long start = System.nanoTime();
+        Response response;
+        try {
+            response = chain.proceed(request);
+        } catch (IOException | RuntimeException e) {
+            // failures count as overload; cancelled calls, e.g. lost hedges, say nothing about the host
+            limit.release(true, System.nanoTime() - start, !chain.call().isCanceled());
+            throw e;
+        }
+        boolean overloaded = response.code() == 429 || response.code() == 503;
+        limit.release(overloaded, System.nanoTime() - start, true);
+        return response;
+    }
+
+    private Limit hostLimit(String host) {
+        return limits.computeIfAbsent(perHost ? host : ALL_HOSTS, Limit::new);
+    }
+
+    @Override
+    public String toString() {
+        return "AdaptiveConcurrencyLimiter{initialLimit=" + initialLimit
+                + ", minLimit=" + minLimit
+                + ", maxLimit=" + maxLimit
+                + ", rejectedCalls=" + getRejectedCalls() + '}';
+    }
+
+    /**
+     * Limit of one host.
+     */
+    private final class Limit {
+        private final String key;
+        private double limit = initialLimit;
+        private int inFlight;
+        private long minRttNanos = Long.MAX_VALUE;
+        private int samples;
+
+        Limit(String key) {
+            this.key = key;
+        }
+
+        synchronized int limit() {
+            return (int) limit;
+        }
+
+        synchronized int inFlight() {
+            return inFlight;
+        }
+
+        synchronized void acquire() throws IOException {
+            if (inFlight >= (int) limit && maxWaitMillis > 0) {
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+                long remaining;
+                while (inFlight >= (int) limit && (remaining = deadline - System.nanoTime()) > 0) {
+                    try {
+                        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted while waiting for a concurrency slot");
+                    }
+                }
+            }
+            if (inFlight >= (int) limit) {
+                rejectedCalls.increment();
+                throw new ConcurrencyLimitExceededException(key, (int) limit);
+            }
+            inFlight++;
+        }
+
+        /**
+         * Frees the call's slot and adapts the limit, unless the sample is to be ignored, e.g. for a cancelled call.
+         */
+        synchronized void release(boolean overloaded, long rttNanos, boolean sample) {
+            int used = inFlight--;
+            if (sample) {
+                if (++samples > RTT_RESET_SAMPLES) {
+                    samples = 0;
+                    minRttNanos = Long.MAX_VALUE;
+                }
+                minRttNanos = Math.min(minRttNanos, rttNanos);
+                double previous = limit;
+                if (overloaded || rttNanos > minRttNanos * rttTolerance) {
+                    limit = Math.max(minLimit, limit * backoffRatio);
+                } else if (used * 2 >= limit) {
+                    limit = Math.min(maxLimit, limit + 1);
+                }
+                if ((int) previous != (int) limit && LOG.isDebugEnabled()) {
+                    LOG.debug("Concurrency limit for {} changed from {} to {}", key.isEmpty() ? "client" : key,
+                            (int) previous, (int) limit);
+                }
+            }
+            notifyAll();
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private final AdaptiveConcurrencyLimiter limiter;
+
+        public Builder() {
+            limiter = new AdaptiveConcurrencyLimiter();
+        }
+
+        /**
+         * Sets the limit each host starts with.
+         */
+        public Builder initialLimit(int initialLimit) {
+            limiter.initialLimit = initialLimit;
+            return this;
+        }
+
+        /**
+         * Sets the lowest the limit can drop to.
+         */
+        public Builder minLimit(int minLimit) {
+            limiter.minLimit = minLimit;
+            return this;
+        }
+
+        /**
+         * Sets the highest the limit can grow to.
+         */
+        public Builder maxLimit(int maxLimit) {
+            limiter.maxLimit = maxLimit;
+            return this;
+        }
+
+        /**
+         * Sets the factor the limit is multiplied with on overload.
+         */
+        public Builder backoffRatio(double backoffRatio) {
+            limiter.backoffRatio = backoffRatio;
+            return this;
+        }
+
+        /**
+         * Sets how many times the minimum round-trip time a call may take before it counts as overload.
+         */
+        public Builder rttTolerance(double rttTolerance) {
+            limiter.rttTolerance = rttTolerance;
+            return this;
+        }
+
+        /**
+         * Sets how long a call may wait for a slot; 0 (the default) rejects calls beyond the limit immediately.
+         */
+        public Builder maxWaitMillis(long maxWaitMillis) {
+            limiter.maxWaitMillis = maxWaitMillis;
+            return this;
+        }
+
+        /**
+         * Sets whether each host has its own limit.
+         */
+        public Builder perHost(boolean perHost) {
+            limiter.perHost = perHost;
+            return this;
+        }
+
+        public AdaptiveConcurrencyLimiter build() {
+            if (limiter.minLimit < 1 || limiter.maxLimit < limiter.minLimit
+                    || limiter.initialLimit < limiter.minLimit || limiter.initialLimit > limiter.maxLimit) {
+                throw new IllegalArgumentException("limits must satisfy 1 <= minLimit <= initialLimit <= maxLimit");
+            }
+            if (limiter.backoffRatio <= 0 || limiter.backoffRatio >= 1 || limiter.rttTolerance < 1) {
+                throw new IllegalArgumentException("invalid backoffRatio or rttTolerance");
+            }
+            if (limiter.maxWaitMillis < 0) {
+                throw new IllegalArgumentException("maxWaitMillis must not be negative");
+            }
+            return limiter;
+        }
+    }
+}
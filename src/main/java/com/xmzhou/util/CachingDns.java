@@ -0,0 +1,283 @@
+package com.xmzhou.util;
+
+import okhttp3.Dns;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <h3> Caching DNS resolver.</h3>
+ *
+ * <p>
+ * Keeps the results of a delegate resolver, {@link Dns#SYSTEM} by default, in a bounded LRU map for a fixed TTL,
+ * independent of the JVM-wide {@code networkaddress.cache.ttl}. Failed lookups are cached for a shorter
+ * negative TTL, so an unknown host does not hit the resolver on every request. Once an entry is older than
+ * {@code refreshAfterMillis} the next lookup still returns it, and a background thread resolves the host again,
+ * so only the first lookup of a host waits for the resolver. A failed refresh keeps the old addresses until they
+ * expire.
+ * </p>
+ *
+ * <pre>
+ *  Usage:
+ * <code>HttpUtil.configure(HttpClientConfig.builder()
+ *          .dns(CachingDns.builder().ttlMillis(30_000).build())
+ *          .build());</code>
+ * </pre>
+ */
+public class CachingDns implements Dns {
+    private static final Logger LOG = LoggerFactory.getLogger(HttpUtil.class);
+
+    /**
+     * Executor of background refreshes shared by all resolvers; a slow resolver only delays other refreshes.
+     */
+    private static final Executor REFRESH_EXECUTOR = refreshExecutor();
+
+    private Dns delegate = Dns.SYSTEM;
+    private long ttlMillis = 60_000;
+    private long negativeTtlMillis = 5_000;
+    private long refreshAfterMillis = -1;
+    private int maxEntries = 1024;
+    private Executor executor = REFRESH_EXECUTOR;
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+
+    @Override
+    public List<InetAddress> lookup(String hostname) throws UnknownHostException {
+        Entry entry = get(hostname);
+        long now = System.nanoTime();
+        if (entry != null && now - entry.expiresAt < 0) {
+            hits.increment();
+            if (now - entry.refreshAt >= 0 && entry.refreshing.compareAndSet(false, true)) {
+                refreshes.increment();
+                try {
+                    executor.execute(() -> refresh(hostname, entry));
+                } catch (RejectedExecutionException e) {
+                    entry.refreshing.set(false);
+                }
+            }
+            return entry.addresses();
+        }
+        misses.increment();
+        return resolve(hostname).addresses();
+    }
+
+    /**
+     * Returns the number of lookups answered from the cache, including cached failures.
+     *
+     * @return the hit count
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of lookups that waited for the delegate resolver.
+     *
+     * @return the miss count
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the number of background refreshes started.
+     *
+     * @return the refresh count
+     */
+    public long getRefreshes() {
+        return refreshes.sum();
+    }
+
+    /**
+     * Returns the number of cached hosts, including expired entries that have not been evicted yet.
+     *
+     * @return the cache size
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Removes all cached results.
+     */
+    public synchronized void evictAll() {
+        entries.clear();
+    }
+
+    private Entry resolve(String hostname) throws UnknownHostException {
+        Entry entry;
+        try {
+            entry = positive(delegate.lookup(hostname));
+        } catch (UnknownHostException e) {
+            entry = new Entry(null, e.getMessage(), System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(negativeTtlMillis), false);
+        }
+        put(hostname, entry);
+        return entry;
+    }
+
+    private void refresh(String hostname, Entry stale) {
+        try {
+            put(hostname, positive(delegate.lookup(hostname)));
+        } catch (UnknownHostException | RuntimeException e) {
+            stale.refreshing.set(false);
+            LOG.debug("Background DNS refresh of {} failed: {}", hostname, e.toString());
+        }
+    }
+
+    private Entry positive(List<InetAddress> addresses) {
+        return new Entry(addresses, null, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ttlMillis), true);
+    }
+
+    private synchronized Entry get(String hostname) {
+        return entries.get(hostname);
+    }
+
+    private synchronized void put(String hostname, Entry entry) {
+        entries.put(hostname, entry);
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (entries.size() > maxEntries && eldest.hasNext()) {
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    private static Executor refreshExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(2, 2, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "HttpUtil DNS Refresh");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    @Override
+    public String toString() {
+        return "CachingDns{ttlMillis=" + ttlMillis
+                + ", negativeTtlMillis=" + negativeTtlMillis
+                + ", hits=" + getHits()
+                + ", misses=" + getMisses() + '}';
+    }
+
+    /**
+     * The addresses of a host, or the message of a failed lookup.
+     */
+    private final class Entry {
+        private final List<InetAddress> addresses;
+        private final String failure;
+        private final long expiresAt;
+        private final long refreshAt;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        Entry(List<InetAddress> addresses, String failure, long expiresAt, boolean refreshable) {
+            this.addresses = addresses;
+            this.failure = failure;
+            this.expiresAt = expiresAt;
+            // failures are not refreshed ahead: they expire and are looked up again
+            this.refreshAt = refreshable
+                    ? expiresAt - TimeUnit.MILLISECONDS.toNanos(ttlMillis - refreshAfterMillis)
+                    : expiresAt;
+        }
+
+        List<InetAddress> addresses() throws UnknownHostException {
+            if (addresses == null) {
+                throw new UnknownHostException(failure);
+            }
+            return addresses;
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private final CachingDns dns;
+
+        public Builder() {
+            dns = new CachingDns();
+        }
+
+        /**
+         * Sets the resolver whose results are cached, {@link Dns#SYSTEM} by default.
+         */
+        public Builder delegate(Dns delegate) {
+            dns.delegate = Objects.requireNonNull(delegate, "delegate");
+            return this;
+        }
+
+        /**
+         * Sets how long resolved addresses are used.
+         */
+        public Builder ttlMillis(long ttlMillis) {
+            dns.ttlMillis = ttlMillis;
+            return this;
+        }
+
+        /**
+         * Sets how long a failed lookup is remembered; 0 disables negative caching.
+         */
+        public Builder negativeTtlMillis(long negativeTtlMillis) {
+            dns.negativeTtlMillis = negativeTtlMillis;
+            return this;
+        }
+
+        /**
+         * Sets the age after which addresses are refreshed in the background, 80% of the TTL by default.
+         */
+        public Builder refreshAfterMillis(long refreshAfterMillis) {
+            dns.refreshAfterMillis = refreshAfterMillis;
+            return this;
+        }
+
+        /**
+         * Sets the number of hosts kept; the least recently used host is evicted first.
+         */
+        public Builder maxEntries(int maxEntries) {
+            dns.maxEntries = maxEntries;
+            return this;
+        }
+
+        /**
+         * Sets the executor of background refreshes, a small shared daemon pool by default.
+         */
+        public Builder executor(Executor executor) {
+            dns.executor = Objects.requireNonNull(executor, "executor");
+            return this;
+        }
+
+        public CachingDns build() {
+            if (dns.ttlMillis <= 0 || dns.negativeTtlMillis < 0) {
+                throw new IllegalArgumentException("ttlMillis must be positive and negativeTtlMillis not negative");
+            }
+            if (dns.refreshAfterMillis < 0) {
+                dns.refreshAfterMillis = dns.ttlMillis - dns.ttlMillis / 5;
+            }
+            if (dns.refreshAfterMillis > dns.ttlMillis) {
+                throw new IllegalArgumentException("refreshAfterMillis must not exceed ttlMillis");
+            }
+            if (dns.maxEntries < 1) {
+                throw new IllegalArgumentException("maxEntries must be at least 1");
+            }
+            return dns;
+        }
+    }
+}
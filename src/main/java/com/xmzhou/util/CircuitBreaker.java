@@ -0,0 +1,301 @@
+package com.xmzhou.util;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <h3> Per-host circuit breaker.</h3>
+ *
+ * <p>
+ * Records the outcome of the last {@code windowSize} calls to each host. Once at least {@code minimumCalls} are
+ * recorded and the share of failures (I/O errors and 5xx responses) or of calls slower than
+ * {@code slowCallDurationMillis} reaches its threshold, the breaker opens: calls fail immediately with a
+ * {@link CircuitBreakerOpenException} instead of waiting for connect and read timeouts. After
+ * {@code openDurationMillis} it lets {@code halfOpenCalls} probe calls through and closes again if they are
+ * healthy, or reopens otherwise.
+ * </p>
+ * <p>
+ * The breaker keeps its state, so it is installed on a client via {@link HttpClientConfig.Builder#circuitBreaker}
+ * and shared by all of that client's requests. {@link Builder#perHost(boolean)} switches to one breaker for the
+ * whole client.
+ * </p>
+ */
+public class CircuitBreaker implements Interceptor {
+    private static final Logger LOG = LoggerFactory.getLogger(HttpUtil.class);
+    private static final String ALL_HOSTS = "";
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private int windowSize = 100;
+    private int minimumCalls = 20;
+    private double failureRateThreshold = 0.5;
+    private double slowCallRateThreshold = 1.0;
+    private long slowCallDurationMillis = 10_000;
+    private long openDurationMillis = 30_000;
+    private int halfOpenCalls = 5;
+    private boolean perHost = true;
+
+    private final ConcurrentMap<String, Breaker> breakers = new ConcurrentHashMap<>();
+    private final LongAdder rejectedCalls = new LongAdder();
+
+    /**
+     * Returns the state of the breaker for the given host.
+     *
+     * @param host the host name
+     * @return the breaker state
+     */
+    public State state(String host) {
+        return breaker(host).state();
+    }
+
+    /**
+     * Returns the number of calls failed fast while a breaker was open.
+     *
+     * @return the rejected call count
+     */
+    public long getRejectedCalls() {
+        return rejectedCalls.sum();
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        Breaker breaker = breaker(request.url().host());
+        breaker.acquire();
+        long start = System.nanoTime();
+        Response response;
+        try {
+            response = chain.proceed(request);
+        } catch (IOException | RuntimeException e) {
+            if (chain.call().isCanceled() || e instanceof ConcurrencyLimitExceededException) {
+                // cancelled calls, e.g. lost hedges, and calls shed locally by the concurrency limiter say nothing
+                // about the host
+                breaker.release();
+            } else {
+                breaker.record(true, System.nanoTime() - start);
+            }
+            throw e;
+        }
+        breaker.record(response.code() >= 500, System.nanoTime() - start);
+        return response;
+    }
+
+    private Breaker breaker(String host) {
+        String key = perHost ? host : ALL_HOSTS;
+        return breakers.computeIfAbsent(key, Breaker::new);
+    }
+
+    @Override
+    public String toString() {
+        return "CircuitBreaker{windowSize=" + windowSize
+                + ", failureRateThreshold=" + failureRateThreshold
+                + ", slowCallRateThreshold=" + slowCallRateThreshold
+                + ", openDurationMillis=" + openDurationMillis
+                + ", rejectedCalls=" + getRejectedCalls() + '}';
+    }
+
+    /**
+     * Breaker of one host: a ring buffer of call outcomes and the state machine on top of it.
+     */
+    private final class Breaker {
+        private static final byte FAILED = 1;
+        private static final byte SLOW = 2;
+
+        private final String key;
+        private final byte[] outcomes = new byte[Math.max(windowSize, halfOpenCalls)];
+        private int next;
+        private int recorded;
+        private int failures;
+        private int slowCalls;
+        private State state = State.CLOSED;
+        private long openedAt;
+        private int probesLeft;
+
+        Breaker(String key) {
+            this.key = key;
+        }
+
+        synchronized State state() {
+            return state;
+        }
+
+        synchronized void acquire() throws CircuitBreakerOpenException {
+            if (state == State.OPEN) {
+                long openNanos = System.nanoTime() - openedAt;
+                long remaining = openDurationMillis - TimeUnit.NANOSECONDS.toMillis(openNanos);
+                if (remaining > 0) {
+                    rejectedCalls.increment();
+                    throw new CircuitBreakerOpenException(key, remaining);
+                }
+                transition(State.HALF_OPEN);
+            }
+            if (state == State.HALF_OPEN) {
+                if (probesLeft == 0) {
+                    rejectedCalls.increment();
+                    throw new CircuitBreakerOpenException(key, 0);
+                }
+                probesLeft--;
+            }
+        }
+
+        synchronized void release() {
+            if (state == State.HALF_OPEN) {
+                probesLeft++;
+            }
+        }
+
+        synchronized void record(boolean failed, long durationNanos) {
+            if (state == State.OPEN) {
+                // a call admitted before the breaker opened
+                return;
+            }
+            byte outcome = (byte) ((failed ? FAILED : 0)
+                    | (TimeUnit.NANOSECONDS.toMillis(durationNanos) >= slowCallDurationMillis ? SLOW : 0));
+            int capacity = state == State.HALF_OPEN ? halfOpenCalls : windowSize;
+            if (recorded == capacity) {
+                byte evicted = outcomes[next];
+                failures -= evicted & FAILED;
+                slowCalls -= (evicted & SLOW) >> 1;
+            } else {
+                recorded++;
+            }
+            outcomes[next] = outcome;
+            next = (next + 1) % capacity;
+            failures += outcome & FAILED;
+            slowCalls += (outcome & SLOW) >> 1;
+
+            if (state == State.HALF_OPEN) {
+                if (recorded == halfOpenCalls) {
+                    transition(unhealthy() ? State.OPEN : State.CLOSED);
+                }
+            } else if (recorded >= minimumCalls && unhealthy()) {
+                transition(State.OPEN);
+            }
+        }
+
+        private boolean unhealthy() {
+            return (double) failures / recorded >= failureRateThreshold
+                    || (double) slowCalls / recorded >= slowCallRateThreshold;
+        }
+
+        private void transition(State to) {
+            if (to == State.OPEN) {
+                LOG.warn("Circuit breaker for {} opened: {} failed and {} slow of the last {} calls",
+                        key.isEmpty() ? "client" : key, failures, slowCalls, recorded);
+                openedAt = System.nanoTime();
+            } else if (LOG.isDebugEnabled()) {
+                LOG.debug("Circuit breaker for {} is {}", key.isEmpty() ? "client" : key, to);
+            }
+            state = to;
+            probesLeft = to == State.HALF_OPEN ? halfOpenCalls : 0;
+            next = 0;
+            recorded = 0;
+            failures = 0;
+            slowCalls = 0;
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private final CircuitBreaker breaker;
+
+        public Builder() {
+            breaker = new CircuitBreaker();
+        }
+
+        /**
+         * Sets the number of most recent calls the rates are computed over.
+         */
+        public Builder windowSize(int windowSize) {
+            breaker.windowSize = windowSize;
+            return this;
+        }
+
+        /**
+         * Sets the number of calls to record before the breaker may open.
+         */
+        public Builder minimumCalls(int minimumCalls) {
+            breaker.minimumCalls = minimumCalls;
+            return this;
+        }
+
+        /**
+         * Sets the share of failed calls that opens the breaker.
+         */
+        public Builder failureRateThreshold(double failureRateThreshold) {
+            breaker.failureRateThreshold = failureRateThreshold;
+            return this;
+        }
+
+        /**
+         * Sets the share of slow calls that opens the breaker; 1.0 (the default) only if every call is slow.
+         */
+        public Builder slowCallRateThreshold(double slowCallRateThreshold) {
+            breaker.slowCallRateThreshold = slowCallRateThreshold;
+            return this;
+        }
+
+        /**
+         * Sets the duration from which a call counts as slow.
+         */
+        public Builder slowCallDurationMillis(long slowCallDurationMillis) {
+            breaker.slowCallDurationMillis = slowCallDurationMillis;
+            return this;
+        }
+
+        /**
+         * Sets how long the breaker stays open before probing.
+         */
+        public Builder openDurationMillis(long openDurationMillis) {
+            breaker.openDurationMillis = openDurationMillis;
+            return this;
+        }
+
+        /**
+         * Sets the number of probe calls let through while half-open.
+         */
+        public Builder halfOpenCalls(int halfOpenCalls) {
+            breaker.halfOpenCalls = halfOpenCalls;
+            return this;
+        }
+
+        /**
+         * Sets whether each host has its own breaker.
+         */
+        public Builder perHost(boolean perHost) {
+            breaker.perHost = perHost;
+            return this;
+        }
+
+        public CircuitBreaker build() {
+            if (breaker.windowSize < 1 || breaker.minimumCalls < 1 || breaker.minimumCalls > breaker.windowSize) {
+                throw new IllegalArgumentException("minimumCalls must be between 1 and windowSize");
+            }
+            if (breaker.halfOpenCalls < 1) {
+                throw new IllegalArgumentException("halfOpenCalls must be at least 1");
+            }
+            if (breaker.failureRateThreshold <= 0 || breaker.failureRateThreshold > 1
+                    || breaker.slowCallRateThreshold <= 0 || breaker.slowCallRateThreshold > 1) {
+                throw new IllegalArgumentException("rate thresholds must be between 0 and 1");
+            }
+            if (breaker.slowCallDurationMillis < 0 || breaker.openDurationMillis < 0) {
+                throw new IllegalArgumentException("durations must not be negative");
+            }
+            return breaker;
+        }
+    }
+}
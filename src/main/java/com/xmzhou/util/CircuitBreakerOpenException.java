@@ -0,0 +1,37 @@
+package com.xmzhou.util;
+
+import java.io.IOException;
+
+/**
+ * Thrown instead of sending a request while the {@link CircuitBreaker} for its host is open.
+ */
+public class CircuitBreakerOpenException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final String key;
+    private final long retryAfterMillis;
+
+    CircuitBreakerOpenException(String key, long retryAfterMillis) {
+        super("Circuit breaker for " + (key.isEmpty() ? "client" : key) + " is open, retry after " + retryAfterMillis + " ms");
+        this.key = key;
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    /**
+     * Returns the host of the open breaker, or an empty string for a client-wide breaker.
+     *
+     * @return the breaker key
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Returns how long the breaker stays open before it lets probe requests through.
+     *
+     * @return the remaining open time in milliseconds
+     */
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+}
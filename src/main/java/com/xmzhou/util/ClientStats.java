@@ -0,0 +1,91 @@
+package com.xmzhou.util;
+
+import okhttp3.OkHttpClient;
+
+/**
+ * Point-in-time snapshot of a client's dispatcher, connection pool, retry budget and
+ * request coalescing.
+ */
+public class ClientStats {
+    private final int queuedCalls;
+    private final int runningCalls;
+    private final int idleConnections;
+    private final int connections;
+    private final long retries;
+    private final long rejectedRetries;
+    private final long coalescedRequests;
+
+    ClientStats(OkHttpClient client, RetryBudget retryBudget, long coalescedRequests) {
+        this.queuedCalls = client.dispatcher().queuedCallsCount();
+        this.runningCalls = client.dispatcher().runningCallsCount();
+        this.idleConnections = client.connectionPool().idleConnectionCount();
+        this.connections = client.connectionPool().connectionCount();
+        this.retries = retryBudget == null ? 0 : retryBudget.getRetries();
+        this.rejectedRetries = retryBudget == null ? 0 : retryBudget.getRejectedRetries();
+        this.coalescedRequests = coalescedRequests;
+    }
+
+    /**
+     * Returns the number of async calls waiting for a dispatcher slot.
+     *
+     * @return the queued call count
+     */
+    public int getQueuedCalls() {
+        return queuedCalls;
+    }
+
+    /**
+     * Returns the number of calls currently executing, sync and async.
+     *
+     * @return the running call count
+     */
+    public int getRunningCalls() {
+        return runningCalls;
+    }
+
+    public int getIdleConnections() {
+        return idleConnections;
+    }
+
+    public int getConnections() {
+        return connections;
+    }
+
+    /**
+     * Returns the number of retries allowed by the client's retry budget so far.
+     *
+     * @return the retry count
+     */
+    public long getRetries() {
+        return retries;
+    }
+
+    /**
+     * Returns the number of retries refused by the client's retry budget so far.
+     *
+     * @return the rejected retry count
+     */
+    public long getRejectedRetries() {
+        return rejectedRetries;
+    }
+
+    /**
+     * Returns the number of requests that were answered by an identical request in flight instead of being sent.
+     *
+     * @return the coalesced request count
+     */
+    public long getCoalescedRequests() {
+        return coalescedRequests;
+    }
+
+    @Override
+    public String toString() {
+        return "ClientStats{queuedCalls=" + queuedCalls
+                + ", runningCalls=" + runningCalls
+                + ", idleConnections=" + idleConnections
+                + ", connections=" + connections
+                + ", retries=" + retries
+                + ", rejectedRetries=" + rejectedRetries
+                + ", coalescedRequests=" + coalescedRequests + '}';
+    }
+}
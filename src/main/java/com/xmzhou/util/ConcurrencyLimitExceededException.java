@@ -0,0 +1,38 @@
+package com.xmzhou.util;
+
+import java.io.IOException;
+
+/**
+ * Thrown instead of sending a request when its host already has as many calls in flight as the
+ * {@link AdaptiveConcurrencyLimiter} currently allows.
+ */
+public class ConcurrencyLimitExceededException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final String key;
+    private final int limit;
+
+    ConcurrencyLimitExceededException(String key, int limit) {
+        super("Concurrency limit of " + limit + " reached for " + (key.isEmpty() ? "client" : key));
+        this.key = key;
+        this.limit = limit;
+    }
+
+    /**
+     * Returns the host of the exceeded limit, or an empty string for a client-wide limit.
+     *
+     * @return the limiter key
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Returns the limit at the time of the rejection.
+     *
+     * @return the concurrency limit
+     */
+    public int getLimit() {
+        return limit;
+    }
+}
@@ -0,0 +1,125 @@
+package com.xmzhou.util;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.GzipSource;
+import okio.Okio;
+import okio.Source;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Advertises and transparently decodes Brotli and zstd responses, in addition to gzip.
+ * <p>
+ * The decoders are optional dependencies: {@code org.brotli:dec} for {@code br} and
+ * {@code com.github.luben:zstd-jni} for {@code zstd}. Encodings whose decoder is not on the classpath are not
+ * advertised. Because this interceptor sets {@code Accept-Encoding}, OkHttp no longer decodes gzip itself, so gzip
+ * is decoded here too. Requests that set their own {@code Accept-Encoding}, or a {@code Range}, are left alone,
+ * as OkHttp does. Bodies are decoded while they are read.
+ */
+final class ContentDecodingInterceptor implements Interceptor {
+    private static final Logger LOG = LoggerFactory.getLogger(HttpUtil.class);
+
+    /**
+     * Decoding stream constructors of the available optional encodings, in order of preference.
+     */
+    private static final Map<String, Constructor<? extends InputStream>> DECODERS = decoders();
+    /**
+     * The {@code Accept-Encoding} sent with requests, e.g. {@code br, zstd, gzip}.
+     */
+    private static final String ACCEPT_ENCODING = acceptEncoding();
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        if (request.header("Accept-Encoding") != null || request.header("Range") != null) {
+            return chain.proceed(request);
+        }
+        Response response = chain.proceed(request.newBuilder()
+                .header("Accept-Encoding", ACCEPT_ENCODING)
+                .build());
+        String encoding = response.header("Content-Encoding");
+        ResponseBody body = response.body();
+        if (encoding == null || body == null || !hasBody(response)) {
+            return response;
+        }
+        Source decoded = decode(encoding.trim().toLowerCase(Locale.ROOT), body);
+        if (decoded == null) {
+            return response;
+        }
+        return response.newBuilder()
+                .removeHeader("Content-Encoding")
+                .removeHeader("Content-Length")
+                .body(ResponseBody.create(body.contentType(), -1, Okio.buffer(decoded)))
+                .build();
+    }
+
+    /**
+     * Returns the decoded body, or null for an encoding that is not decoded here, e.g. a list of encodings.
+     */
+    private static Source decode(String encoding, ResponseBody body) throws IOException {
+        if ("gzip".equals(encoding)) {
+            return new GzipSource(body.source());
+        }
+        Constructor<? extends InputStream> decoder = DECODERS.get(encoding);
+        if (decoder == null) {
+            return null;
+        }
+        try {
+            return Okio.source(decoder.newInstance(body.source().inputStream()));
+        } catch (InvocationTargetException e) {
+            body.close();
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException("Cannot decode " + encoding, cause);
+        } catch (ReflectiveOperationException e) {
+            body.close();
+            throw new IOException("Cannot decode " + encoding, e);
+        }
+    }
+
+    private static boolean hasBody(Response response) {
+        int code = response.code();
+        return !"HEAD".equals(response.request().method()) && code != 204 && code != 304
+                && (code >= 200 || code < 100) && !"0".equals(response.header("Content-Length"));
+    }
+
+    private static Map<String, Constructor<? extends InputStream>> decoders() {
+        Map<String, Constructor<? extends InputStream>> decoders = new LinkedHashMap<>();
+        register(decoders, "br", "org.brotli.dec.BrotliInputStream");
+        register(decoders, "zstd", "com.github.luben.zstd.ZstdInputStream");
+        return Collections.unmodifiableMap(decoders);
+    }
+
+    private static void register(Map<String, Constructor<? extends InputStream>> decoders, String encoding,
+                                 String className) {
+        try {
+            // initializing the class also loads zstd-jni's native library
+            Class<? extends InputStream> type = Class.forName(className, true,
+                    ContentDecodingInterceptor.class.getClassLoader()).asSubclass(InputStream.class);
+            decoders.put(encoding, type.getConstructor(InputStream.class));
+        } catch (ClassNotFoundException e) {
+            // the optional dependency is absent
+        } catch (ReflectiveOperationException | LinkageError | ClassCastException e) {
+            LOG.warn("Cannot use {} to decode {} responses: {}", className, encoding, e.toString());
+        }
+    }
+
+    private static String acceptEncoding() {
+        StringBuilder value = new StringBuilder();
+        for (String encoding : DECODERS.keySet()) {
+            value.append(encoding).append(", ");
+        }
+        return value.append("gzip").toString();
+    }
+}
@@ -0,0 +1,200 @@
+package com.xmzhou.util;
+
+import okhttp3.Headers;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import org.slf4j.Logger;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logs requests and responses at DEBUG level.
+ * <p>
+ * The logger level is checked on every request, so when DEBUG is disabled the interceptor only forwards the
+ * call: no header walking, body copying or string building happens. When enabled, at most
+ * {@link #getMaxBodyBytes()} bytes of each body are copied into the log. Request bodies that are larger,
+ * of unknown length or one-shot are never read, and response bodies are only peeked. Response bodies of streaming
+ * calls are not logged at all, so they are never copied into memory.
+ */
+final class DebugLoggingInterceptor implements Interceptor {
+    private static volatile long maxBodyBytes = 64 * 1024;
+
+    private final Logger log;
+
+    DebugLoggingInterceptor(Logger log) {
+        this.log = log;
+    }
+
+    static long getMaxBodyBytes() {
+        return maxBodyBytes;
+    }
+
+    static void setMaxBodyBytes(long maxBodyBytes) {
+        if (maxBodyBytes < 0) {
+            throw new IllegalArgumentException("maxBodyBytes < 0");
+        }
+        DebugLoggingInterceptor.maxBodyBytes = maxBodyBytes;
+    }
+
+    /**
+     * Runs the given interceptor only while DEBUG is enabled and the request body is small enough to be logged.
+     * Used for interceptors such as the curl logger that copy the whole request body.
+     */
+    static Interceptor whenDebugEnabled(Logger log, Interceptor delegate) {
+        return chain -> {
+            if (!log.isDebugEnabled() || !isLoggable(chain.request().body())) {
+                return chain.proceed(chain.request());
+            }
+            return delegate.intercept(chain);
+        };
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        if (!log.isDebugEnabled()) {
+            return chain.proceed(request);
+        }
+
+        log.debug("--> " + request.method() + " " + request.url());
+        RequestBody requestBody = request.body();
+        if (requestBody != null) {
+            if (requestBody.contentType() != null) {
+                log.debug("Content-Type: " + requestBody.contentType());
+            }
+            if (requestBody.contentLength() != -1) {
+                log.debug("Content-Length: " + requestBody.contentLength());
+            }
+        }
+        logHeaders(request.headers());
+        logRequestBody(request.method(), requestBody);
+
+        long startNs = System.nanoTime();
+        Response response;
+        try {
+            response = chain.proceed(request);
+        } catch (IOException e) {
+            log.debug("<-- HTTP FAILED: " + e);
+            throw e;
+        }
+        long tookMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNs);
+
+        log.debug("<-- " + response.code() + (response.message().isEmpty() ? "" : " " + response.message())
+                + " " + response.request().url() + " (" + tookMs + "ms)");
+        logHeaders(response.headers());
+        if (StreamingResponse.isStreamed(request)) {
+            log.debug("<-- END HTTP (streamed body omitted)");
+        } else {
+            logResponseBody(response);
+        }
+        return response;
+    }
+
+    private void logHeaders(Headers headers) {
+        for (int i = 0, size = headers.size(); i < size; i++) {
+            log.debug(headers.name(i) + ": " + headers.value(i));
+        }
+    }
+
+    private void logRequestBody(String method, RequestBody body) throws IOException {
+        if (body == null) {
+            log.debug("--> END " + method);
+        } else if (body.isDuplex() || body.isOneShot()) {
+            log.debug("--> END " + method + " (streamed body omitted)");
+        } else if (!isLoggable(body)) {
+            long length = body.contentLength();
+            log.debug("--> END " + method + " (" + (length == -1 ? "unknown-length" : length + "-byte") + " body omitted)");
+        } else {
+            Buffer buffer = new Buffer();
+            body.writeTo(buffer);
+            if (isPlaintext(buffer)) {
+                log.debug("");
+                log.debug(buffer.readString(charset(body.contentType())));
+                log.debug("--> END " + method + " (" + body.contentLength() + "-byte body)");
+            } else {
+                log.debug("--> END " + method + " (binary " + body.contentLength() + "-byte body omitted)");
+            }
+        }
+    }
+
+    private void logResponseBody(Response response) throws IOException {
+        ResponseBody body = response.body();
+        if (body == null || !promisesBody(response)) {
+            log.debug("<-- END HTTP");
+            return;
+        }
+        if (response.header("Content-Encoding") != null && !"identity".equalsIgnoreCase(response.header("Content-Encoding"))) {
+            log.debug("<-- END HTTP (encoded body omitted)");
+            return;
+        }
+        long limit = maxBodyBytes;
+        ResponseBody peeked = response.peekBody(limit);
+        Buffer buffer = new Buffer();
+        buffer.writeAll(peeked.source());
+        boolean truncated = body.contentLength() > limit || (body.contentLength() == -1 && buffer.size() == limit);
+        if (!isPlaintext(buffer)) {
+            log.debug("<-- END HTTP (binary body omitted)");
+            return;
+        }
+        if (buffer.size() > 0) {
+            log.debug("");
+            log.debug(buffer.readString(charset(body.contentType())));
+        }
+        log.debug(truncated
+                ? "<-- END HTTP (body truncated to " + limit + " bytes)"
+                : "<-- END HTTP (" + peeked.contentLength() + "-byte body)");
+    }
+
+    private static boolean isLoggable(RequestBody body) throws IOException {
+        if (body == null) {
+            return true;
+        }
+        if (body.isDuplex() || body.isOneShot()) {
+            return false;
+        }
+        long length = body.contentLength();
+        return length != -1 && length <= maxBodyBytes;
+    }
+
+    private static boolean promisesBody(Response response) {
+        if ("HEAD".equals(response.request().method())) {
+            return false;
+        }
+        int code = response.code();
+        return (code >= 200 || code < 100) && code != 204 && code != 304;
+    }
+
+    private static Charset charset(MediaType contentType) {
+        Charset charset = contentType == null ? null : contentType.charset(StandardCharsets.UTF_8);
+        return charset == null ? StandardCharsets.UTF_8 : charset;
+    }
+
+    /**
+     * Returns true if the start of the buffer looks like human readable text.
+     */
+    private static boolean isPlaintext(Buffer buffer) {
+        try {
+            Buffer prefix = new Buffer();
+            buffer.copyTo(prefix, 0, Math.min(buffer.size(), 64));
+            for (int i = 0; i < 16 && !prefix.exhausted(); i++) {
+                int codePoint = prefix.readUtf8CodePoint();
+                if (Character.isISOControl(codePoint) && !Character.isWhitespace(codePoint)) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (EOFException e) {
+            // truncated UTF-8 sequence
+            return false;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.xmzhou.util;
+
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Helpers for streaming response bodies into files.
+ * <p>
+ * Bodies are moved from the socket to a {@link FileChannel} through one fixed-size heap buffer per transfer,
+ * so the heap footprint of a download does not depend on the size of the body. A heap buffer is used because
+ * the JDK writes it through its own cached per-thread direct buffer; allocating direct memory per download or
+ * segment would bypass the heap limits and is only released when the buffer is collected.
+ */
+final class FileDownloads {
+    /**
+     * Size of the transfer buffer used for each download.
+     */
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes (\\d+)-(\\d+)/(\\d+|\\*)");
+    private static final Pattern UNSATISFIED_RANGE = Pattern.compile("bytes \\*/(\\d+)");
+
+    private FileDownloads() {
+    }
+
+    /**
+     * Writes a successful response body to the target file, replacing any existing content.
+     *
+     * @param response the response to read from
+     * @param target   the file to write to
+     * @return the number of bytes written
+     * @throws IOException if the response is not successful or the file cannot be written
+     */
+    static long write(Response response, Path target) throws IOException {
+        ResponseBody body = successfulBody(response);
+        try (FileChannel channel = FileChannel.open(target,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            return transfer(body.source(), channel, 0);
+        }
+    }
+
+    /**
+     * Returns the body of a 2xx response.
+     *
+     * @param response the response to check
+     * @return the response body
+     * @throws IOException if the response is not successful
+     */
+    static ResponseBody successfulBody(Response response) throws IOException {
+        if (!response.isSuccessful()) {
+            throw new IOException("Unexpected HTTP status " + response.code() + " for " + response.request().url());
+        }
+        ResponseBody body = response.body();
+        if (body == null) {
+            throw new IllegalStateException("Response body is null");
+        }
+        return body;
+    }
+
+    /**
+     * Copies the source into the channel using positional writes starting at {@code position}.
+     * The channel's own position is left untouched, so several transfers may share one channel.
+     *
+     * @param source   the source to drain
+     * @param channel  the channel to write to
+     * @param position the file offset of the first byte
+     * @return the number of bytes written
+     * @throws IOException if reading or writing fails
+     */
+    static long transfer(BufferedSource source, FileChannel channel, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        long written = 0;
+        while (source.read(buffer) != -1) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                written += channel.write(buffer, position + written);
+            }
+            buffer.clear();
+        }
+        return written;
+    }
+
+    /**
+     * Returns the first byte position of a 206 response's {@code Content-Range}, or -1 if it is missing.
+     */
+    static long rangeStart(Response response) {
+        Matcher matcher = contentRange(response, CONTENT_RANGE);
+        return matcher == null ? -1 : Long.parseLong(matcher.group(1));
+    }
+
+    /**
+     * Returns the total resource length announced by a 206 response, or -1 if it is unknown.
+     */
+    static long totalLength(Response response) {
+        Matcher matcher = contentRange(response, CONTENT_RANGE);
+        return matcher == null || "*".equals(matcher.group(3)) ? -1 : Long.parseLong(matcher.group(3));
+    }
+
+    /**
+     * Returns the resource length announced by a 416 response ({@code bytes *&#47;length}), or -1 if it is missing.
+     */
+    static long unsatisfiedLength(Response response) {
+        Matcher matcher = contentRange(response, UNSATISFIED_RANGE);
+        return matcher == null ? -1 : Long.parseLong(matcher.group(1));
+    }
+
+    /**
+     * Returns a validator usable with {@code If-Range}: a strong ETag, else Last-Modified, else null.
+     */
+    static String validator(Response response) {
+        String etag = response.header("ETag");
+        if (etag != null && !etag.startsWith("W/")) {
+            return etag;
+        }
+        return response.header("Last-Modified");
+    }
+
+    private static Matcher contentRange(Response response, Pattern pattern) {
+        String contentRange = response.header("Content-Range");
+        if (contentRange == null) {
+            return null;
+        }
+        Matcher matcher = pattern.matcher(contentRange.trim());
+        return matcher.matches() ? matcher : null;
+    }
+}
@@ -0,0 +1,236 @@
+package com.xmzhou.util;
+
+import okhttp3.Request;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <h3> Hedging policy for idempotent GET requests.</h3>
+ *
+ * <p>
+ * If a request has not completed after the hedge delay, an identical request is sent; the first response wins
+ * and the other call is cancelled. The delay is fixed, or follows a percentile of the latencies this policy has
+ * observed, e.g. p95 so that only the slowest 5% of requests are hedged.
+ * </p>
+ * <p>
+ * Hedges are capped by a token bucket: each request earns {@code maxHedgeRatio} of a hedge, so a slow backend
+ * sees at most that fraction of extra load. A policy keeps its samples and metrics, so it should be shared by
+ * the requests to one service rather than built per request.
+ * </p>
+ *
+ * <pre>
+ *  Usage:
+ * <code>HedgePolicy hedging = HedgePolicy.builder().delayPercentile(0.95).build();
+ *  HttpUtil.get(url)
+ *          .hedge(hedging)
+ *          .execute();</code>
+ * </pre>
+ */
+public class HedgePolicy {
+    private static final int SAMPLES = 128;
+    private static final int MIN_SAMPLES = 20;
+    private static final int RECOMPUTE_INTERVAL = 16;
+    /**
+     * Hedge tokens are stored in thousandths so that fractional deposits fit in an AtomicLong.
+     */
+    private static final long SCALE = 1000;
+
+    private long delayMillis = 100;
+    private double delayPercentile;
+    private double maxHedgeRatio = 0.1;
+    private int maxBurst = 10;
+
+    private final AtomicLongArray latencies = new AtomicLongArray(SAMPLES);
+    private final AtomicLong samples = new AtomicLong();
+    private volatile long percentileDelayMillis = -1;
+    private volatile long computedAt;
+    private final AtomicLong tokens = new AtomicLong();
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+    private final LongAdder skippedHedges = new LongAdder();
+
+    public long getDelayMillis() {
+        return delayMillis;
+    }
+
+    public double getDelayPercentile() {
+        return delayPercentile;
+    }
+
+    public double getMaxHedgeRatio() {
+        return maxHedgeRatio;
+    }
+
+    /**
+     * Returns the number of hedgeable requests sent with this policy.
+     *
+     * @return the request count
+     */
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    /**
+     * Returns the number of hedge requests sent.
+     *
+     * @return the hedge count
+     */
+    public long getHedges() {
+        return hedges.sum();
+    }
+
+    /**
+     * Returns the number of requests answered by the hedge rather than the original request.
+     *
+     * @return the hedge win count
+     */
+    public long getHedgeWins() {
+        return hedgeWins.sum();
+    }
+
+    /**
+     * Returns the number of hedges not sent because the hedge rate cap was reached.
+     *
+     * @return the skipped hedge count
+     */
+    public long getSkippedHedges() {
+        return skippedHedges.sum();
+    }
+
+    /**
+     * Returns the delay after which the next request is hedged.
+     *
+     * @return the current hedge delay in milliseconds
+     */
+    public long currentDelayMillis() {
+        if (delayPercentile <= 0) {
+            return delayMillis;
+        }
+        long count = samples.get();
+        if (count < MIN_SAMPLES) {
+            return delayMillis;
+        }
+        if (percentileDelayMillis < 0 || count - computedAt >= RECOMPUTE_INTERVAL) {
+            int size = (int) Math.min(count, SAMPLES);
+            long[] sorted = new long[size];
+            for (int i = 0; i < size; i++) {
+                sorted[i] = latencies.get(i);
+            }
+            Arrays.sort(sorted);
+            int index = Math.max(0, (int) Math.ceil(delayPercentile * size) - 1);
+            percentileDelayMillis = TimeUnit.NANOSECONDS.toMillis(sorted[index]);
+            computedAt = count;
+        }
+        return percentileDelayMillis;
+    }
+
+    boolean isHedgeable(Request request) {
+        return "GET".equals(request.method()) || "HEAD".equals(request.method());
+    }
+
+    void onRequest() {
+        requests.increment();
+        long deposit = (long) (maxHedgeRatio * SCALE);
+        long max = maxBurst * SCALE;
+        long current;
+        do {
+            current = tokens.get();
+            if (current >= max) {
+                return;
+            }
+        } while (!tokens.compareAndSet(current, Math.min(max, current + deposit)));
+    }
+
+    boolean tryHedge() {
+        long current;
+        do {
+            current = tokens.get();
+            if (current < SCALE) {
+                skippedHedges.increment();
+                return false;
+            }
+        } while (!tokens.compareAndSet(current, current - SCALE));
+        hedges.increment();
+        return true;
+    }
+
+    void onComplete(long latencyNanos, boolean hedgeWon) {
+        if (hedgeWon) {
+            hedgeWins.increment();
+        }
+        latencies.set((int) (samples.getAndIncrement() % SAMPLES), latencyNanos);
+    }
+
+    @Override
+    public String toString() {
+        return "HedgePolicy{delayMillis=" + delayMillis
+                + ", delayPercentile=" + delayPercentile
+                + ", requests=" + getRequests()
+                + ", hedges=" + getHedges()
+                + ", hedgeWins=" + getHedgeWins() + '}';
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private final HedgePolicy policy;
+
+        public Builder() {
+            policy = new HedgePolicy();
+        }
+
+        /**
+         * Sets the fixed hedge delay, also used until enough latencies are observed for a percentile.
+         */
+        public Builder delayMillis(long delayMillis) {
+            policy.delayMillis = delayMillis;
+            return this;
+        }
+
+        /**
+         * Hedges after the given percentile of observed latencies, e.g. 0.95; 0 keeps the fixed delay.
+         */
+        public Builder delayPercentile(double delayPercentile) {
+            policy.delayPercentile = delayPercentile;
+            return this;
+        }
+
+        /**
+         * Sets the largest fraction of requests that may be hedged.
+         */
+        public Builder maxHedgeRatio(double maxHedgeRatio) {
+            policy.maxHedgeRatio = maxHedgeRatio;
+            return this;
+        }
+
+        /**
+         * Sets the largest burst of hedges, which the cap allows before any requests have been sent.
+         */
+        public Builder maxBurst(int maxBurst) {
+            policy.maxBurst = maxBurst;
+            return this;
+        }
+
+        public HedgePolicy build() {
+            if (policy.delayMillis < 0) {
+                throw new IllegalArgumentException("delayMillis must not be negative");
+            }
+            if (policy.delayPercentile < 0 || policy.delayPercentile >= 1) {
+                throw new IllegalArgumentException("delayPercentile must be between 0 and 1");
+            }
+            if (policy.maxHedgeRatio < 0 || policy.maxHedgeRatio > 1 || policy.maxBurst < 0) {
+                throw new IllegalArgumentException("invalid hedge rate cap");
+            }
+            policy.tokens.set(policy.maxBurst * SCALE);
+            return policy;
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.xmzhou.util;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * A call that sends a second, identical call if the first has not completed within the {@link HedgePolicy}'s delay.
+ * <p>
+ * The first response wins and the other call is cancelled. A failure only ends the hedged call once no other call
+ * is running or pending. {@link #execute()} runs the first call on the caller's thread, like any synchronous call,
+ * and only the hedge on the hedge executor, or the client's dispatcher if there is none. Hedges do not deposit into
+ * the retry budget, as they are not requests of their own.
+ */
+final class HedgedCall implements HttpCall {
+    private static final Logger LOG = LoggerFactory.getLogger(HttpUtil.class);
+
+    private final Supplier<HttpCall> firstCall;
+    private final Supplier<HttpCall> hedgeCalls;
+    private final HedgePolicy policy;
+    private final Executor hedgeExecutor;
+    private final List<HttpCall> running = new ArrayList<>(2);
+
+    private Callback callback;
+    private Executor executor;
+    private Future<?> timer;
+    private boolean done;
+    private boolean canceled;
+    private long startNanos;
+
+    /**
+     * @param firstCall     creates the first call
+     * @param hedgeCalls    creates a hedge, which must not deposit into the retry budget
+     * @param policy        the hedge policy
+     * @param hedgeExecutor runs the hedge of {@link #execute()}, or null for the client's dispatcher
+     */
+    HedgedCall(Supplier<HttpCall> firstCall, Supplier<HttpCall> hedgeCalls, HedgePolicy policy, Executor hedgeExecutor) {
+        this.firstCall = firstCall;
+        this.hedgeCalls = hedgeCalls;
+        this.policy = policy;
+        this.hedgeExecutor = hedgeExecutor;
+    }
+
+    @Override
+    public Response execute() throws IOException {
+        // completed by the hedge, if it wins or fails last
+        CompletableFuture<Response> hedged = new CompletableFuture<>();
+        HttpCall first = firstCall.get();
+        synchronized (this) {
+            this.callback = new Callback() {
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    hedged.completeExceptionally(e);
+                }
+
+                @Override
+                public void onResponse(Call call, Response response) {
+                    if (!hedged.complete(response)) {
+                        response.close();
+                    }
+                }
+            };
+            this.executor = hedgeExecutor;
+            this.startNanos = System.nanoTime();
+            running.add(first);
+        }
+        policy.onRequest();
+        scheduleHedge();
+        Response response;
+        try {
+            response = first.execute();
+        } catch (InterruptedIOException e) {
+            cancel();
+            throw e;
+        } catch (IOException e) {
+            synchronized (this) {
+                running.remove(first);
+                if (canceled || (!done && running.isEmpty())) {
+                    // a failure before the hedge was sent ends the call; retries are up to the retry policy
+                    finish();
+                    throw e;
+                }
+            }
+            // the hedge has won or may still answer
+            return await(hedged);
+        } catch (RuntimeException e) {
+            cancel();
+            throw e;
+        }
+        List<HttpCall> losers;
+        synchronized (this) {
+            running.remove(first);
+            if (done) {
+                response.close();
+                if (canceled) {
+                    throw new IOException("Canceled");
+                }
+                return await(hedged);
+            }
+            finish();
+            losers = new ArrayList<>(running);
+        }
+        for (HttpCall loser : losers) {
+            loser.cancel();
+        }
+        policy.onComplete(System.nanoTime() - startNanos, false);
+        return response;
+    }
+
+    private Response await(CompletableFuture<Response> result) throws IOException {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            cancel();
+            result.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the response");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    @Override
+    public void enqueue(Callback callback, Executor executor) {
+        synchronized (this) {
+            this.callback = callback;
+            this.executor = executor;
+            this.startNanos = System.nanoTime();
+        }
+        policy.onRequest();
+        launch(false);
+        scheduleHedge();
+    }
+
+    @Override
+    public void cancel() {
+        List<HttpCall> calls;
+        synchronized (this) {
+            canceled = true;
+            finish();
+            calls = new ArrayList<>(running);
+        }
+        for (HttpCall call : calls) {
+            call.cancel();
+        }
+    }
+
+    private void scheduleHedge() {
+        long delay = policy.currentDelayMillis();
+        synchronized (this) {
+            if (!done) {
+                timer = SharedScheduler.schedule(this::hedge, delay, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Ends the hedged call and stops a pending hedge. Must be called while holding the lock.
+     */
+    private void finish() {
+        done = true;
+        if (timer != null) {
+            timer.cancel(false);
+            timer = null;
+        }
+    }
+
+    private void hedge() {
+        synchronized (this) {
+            timer = null;
+            if (done) {
+                return;
+            }
+        }
+        if (policy.tryHedge()) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Hedging request after {} ms", policy.currentDelayMillis());
+            }
+            launch(true);
+        }
+    }
+
+    private void launch(boolean hedge) {
+        HttpCall call = hedge ? hedgeCalls.get() : firstCall.get();
+        synchronized (this) {
+            if (done) {
+                return;
+            }
+            running.add(call);
+        }
+        Callback attemptCallback = new Callback() {
+            @Override
+            public void onFailure(Call okCall, IOException e) {
+                synchronized (HedgedCall.this) {
+                    running.remove(call);
+                    if (done || !running.isEmpty()) {
+                        // the other call may still answer
+                        return;
+                    }
+                    // a failure before the hedge was sent ends the call; retries are up to the retry policy
+                    finish();
+                }
+                callback.onFailure(okCall, e);
+            }
+
+            @Override
+            public void onResponse(Call okCall, Response response) throws IOException {
+                List<HttpCall> losers;
+                synchronized (HedgedCall.this) {
+                    running.remove(call);
+                    if (done) {
+                        response.close();
+                        return;
+                    }
+                    finish();
+                    losers = new ArrayList<>(running);
+                }
+                for (HttpCall loser : losers) {
+                    loser.cancel();
+                }
+                policy.onComplete(System.nanoTime() - startNanos, hedge);
+                callback.onResponse(okCall, response);
+            }
+        };
+        try {
+            call.enqueue(attemptCallback, executor);
+        } catch (RuntimeException e) {
+            // e.g. from an event listener; failing this attempt keeps execute() from waiting forever
+            attemptCallback.onFailure(null, new IOException("canceled due to " + e, e));
+        }
+    }
+}
@@ -0,0 +1,604 @@
+package com.xmzhou.util;
+
+import okhttp3.Cache;
+import okhttp3.CacheControl;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Headers;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * <h3> Two-tier HTTP response cache.</h3>
+ *
+ * <p>
+ * The disk tier is OkHttp's {@link Cache}. In front of it, an optional memory tier keeps small GET responses in
+ * a size-bounded LRU map and serves them while they are fresh, without touching the disk or the network.
+ * Responses of streaming calls and downloads are never copied into it.
+ * Freshness follows RFC 7234 from the response's {@code Cache-Control}, {@code Expires} and {@code Age} headers,
+ * with the usual 10% heuristic for responses that only carry {@code Last-Modified}. Stale entries with an
+ * {@code ETag} or {@code Last-Modified} are revalidated with a conditional request, and a 304 refreshes them.
+ * Request {@code Cache-Control} directives, e.g. from {@link HttpUtil.RequestBuilder#cacheControl(CacheControl)},
+ * are honored by both tiers.
+ * </p>
+ * <p>
+ * The memory tier also implements RFC 5861. Within an entry's {@code stale-while-revalidate} window it is served
+ * at once while a clone of the call revalidates it in the background on the same client, and within its
+ * {@code stale-if-error} window it is served when the server fails or answers 500, 502, 503 or 504. Both windows
+ * come from the response's {@code Cache-Control}, or from the builder's defaults for servers that send neither.
+ * Responses served stale carry a {@code Warning} header.
+ * </p>
+ *
+ * <pre>
+ *  Usage:
+ * <code>HttpUtil.configure(HttpClientConfig.builder()
+ *          .cache(HttpCache.builder()
+ *                  .memoryMaxBytes(16 * 1024 * 1024)
+ *                  .staleWhileRevalidateMillis(60_000)
+ *                  .directory(Paths.get("/var/cache/http"), 256 * 1024 * 1024)
+ *                  .build())
+ *          .build());</code>
+ * </pre>
+ */
+public class HttpCache implements Interceptor {
+    private static final Logger LOG = LoggerFactory.getLogger(HttpUtil.class);
+    private static final int NOT_MODIFIED = 304;
+
+    private long memoryMaxBytes;
+    private long maxEntryBytes = 1024 * 1024;
+    private long staleWhileRevalidateMillis;
+    private long staleIfErrorMillis;
+    private Cache diskCache;
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBytes;
+    private final LongAdder memoryHits = new LongAdder();
+    private final LongAdder revalidatedHits = new LongAdder();
+    private final LongAdder staleHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    /**
+     * Background revalidations in flight, by URL.
+     */
+    private final ConcurrentMap<String, Call> revalidations = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the number of responses served from memory without contacting the server.
+     *
+     * @return the memory hit count
+     */
+    public long getMemoryHits() {
+        return memoryHits.sum();
+    }
+
+    /**
+     * Returns the number of memory entries the server confirmed with 304 Not Modified.
+     *
+     * @return the revalidated hit count
+     */
+    public long getRevalidatedHits() {
+        return revalidatedHits.sum();
+    }
+
+    /**
+     * Returns the number of stale memory entries served, while revalidating them or because the server failed.
+     *
+     * @return the stale hit count
+     */
+    public long getStaleHits() {
+        return staleHits.sum();
+    }
+
+    /**
+     * Returns the number of responses served from disk without contacting the server.
+     *
+     * @return the disk hit count
+     */
+    public long getDiskHits() {
+        // OkHttp also counts conditional hits; those are already counted here as revalidated
+        return diskCache == null ? 0 : diskCache.hitCount();
+    }
+
+    /**
+     * Returns the number of cacheable requests that neither tier could answer.
+     *
+     * @return the miss count
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the total body size of the responses held in memory.
+     *
+     * @return the memory tier size in bytes
+     */
+    public synchronized long memorySize() {
+        return memoryBytes;
+    }
+
+    /**
+     * Removes all entries from both tiers.
+     *
+     * @throws IOException if the disk cache cannot be cleared
+     */
+    public void evictAll() throws IOException {
+        synchronized (this) {
+            entries.clear();
+            memoryBytes = 0;
+        }
+        if (diskCache != null) {
+            diskCache.evictAll();
+        }
+    }
+
+    Cache diskCache() {
+        return diskCache;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        CacheControl requestCaching = request.cacheControl();
+        String key = request.url().toString();
+        if (memoryMaxBytes == 0 || !"GET".equals(request.method()) || requestCaching.noStore()
+                || request.header("Authorization") != null) {
+            Response response = chain.proceed(request);
+            if (!"GET".equals(request.method()) && !"HEAD".equals(request.method())) {
+                // unsafe methods invalidate the stored response of their URL
+                remove(key);
+            }
+            return countMiss(response);
+        }
+        Entry entry = requestCaching.noCache() ? null : lookup(key, request);
+        long now = System.currentTimeMillis();
+        // a background revalidation must reach the server even though the entry is still servable
+        boolean revalidation = revalidations.get(key) == chain.call();
+        boolean acceptsStale = requestCaching.maxAgeSeconds() == -1 && requestCaching.minFreshSeconds() == -1;
+        if (entry != null && !revalidation) {
+            if (entry.isFresh(requestCaching, now)) {
+                memoryHits.increment();
+                return entry.response(request);
+            }
+            if (acceptsStale && entry.isServableStale(entry.staleWhileRevalidateMillis(staleWhileRevalidateMillis), now)) {
+                revalidate(chain, key);
+                staleHits.increment();
+                return entry.stale(request, "110 - \"Response is Stale\"");
+            }
+        }
+
+        Request networkRequest = request;
+        if (entry != null && entry.hasValidator() && !hasConditions(request)) {
+            networkRequest = entry.conditional(request);
+        }
+        boolean staleIfError = entry != null && acceptsStale
+                && entry.isServableStale(entry.staleIfErrorMillis(staleIfErrorMillis), now);
+        Response response;
+        try {
+            response = chain.proceed(networkRequest);
+        } catch (IOException e) {
+            if (!staleIfError || chain.call().isCanceled()) {
+                throw e;
+            }
+            LOG.warn("Serving stale response for {} after request failure: {}", key, e.toString());
+            staleHits.increment();
+            return entry.stale(request, "111 - \"Revalidation Failed\"");
+        }
+        if (staleIfError && isServerError(response.code())) {
+            LOG.warn("Serving stale response for {} after HTTP {}", key, response.code());
+            response.close();
+            staleHits.increment();
+            return entry.stale(request, "111 - \"Revalidation Failed\"");
+        }
+        if (response.code() == NOT_MODIFIED && networkRequest != request) {
+            response.close();
+            Entry refreshed = entry.refresh(response);
+            store(key, refreshed);
+            revalidatedHits.increment();
+            return refreshed.response(request);
+        }
+        countMiss(response);
+        return maybeStore(key, request, response);
+    }
+
+    /**
+     * Revalidates the entry of the given URL with a clone of the current call, unless that is already underway.
+     */
+    private void revalidate(Chain chain, String key) {
+        Call call = chain.call().clone();
+        if (revalidations.putIfAbsent(key, call) != null) {
+            return;
+        }
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                revalidations.remove(key, call);
+                LOG.debug("Background revalidation of {} failed", key, e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                // the response has been stored on its way through this interceptor
+                revalidations.remove(key, call);
+                response.close();
+            }
+        });
+    }
+
+    private static boolean isServerError(int code) {
+        return code == 500 || code == 502 || code == 503 || code == 504;
+    }
+
+    private Response countMiss(Response response) {
+        if (response.cacheResponse() == null && response.networkResponse() != null
+                && "GET".equals(response.request().method())) {
+            misses.increment();
+        }
+        return response;
+    }
+
+    private Response maybeStore(String key, Request request, Response response) throws IOException {
+        CacheControl caching = response.cacheControl();
+        if (response.code() != 200 || caching.noStore() || "*".equals(response.header("Vary"))) {
+            remove(key);
+            return response;
+        }
+        long lifetime = Entry.freshnessLifetime(response);
+        if (lifetime <= 0 && response.header("ETag") == null && response.header("Last-Modified") == null
+                && Entry.staleWhileRevalidateMillis(response.headers(), staleWhileRevalidateMillis) <= 0
+                && Entry.staleIfErrorMillis(response.headers(), staleIfErrorMillis) <= 0) {
+            return response;
+        }
+        ResponseBody body = response.body();
+        // streamed bodies, e.g. of downloads, are read by the caller straight from the connection
+        if (body == null || body.contentLength() > maxEntryBytes || StreamingResponse.isStreamed(request)) {
+            return response;
+        }
+        // peeking buffers the body in the source, so the caller still reads it from there
+        ResponseBody peeked = response.peekBody(maxEntryBytes + 1);
+        byte[] bytes = peeked.bytes();
+        if (bytes.length <= maxEntryBytes) {
+            store(key, new Entry(request, response, bytes, lifetime));
+        }
+        return response;
+    }
+
+    private synchronized Entry lookup(String key, Request request) {
+        Entry entry = entries.get(key);
+        return entry != null && entry.matches(request) ? entry : null;
+    }
+
+    private synchronized void store(String key, Entry entry) {
+        Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            memoryBytes -= previous.body.length;
+        }
+        memoryBytes += entry.body.length;
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (memoryBytes > memoryMaxBytes && eldest.hasNext()) {
+            memoryBytes -= eldest.next().body.length;
+            eldest.remove();
+        }
+    }
+
+    private synchronized void remove(String key) {
+        Entry previous = entries.remove(key);
+        if (previous != null) {
+            memoryBytes -= previous.body.length;
+        }
+    }
+
+    private static boolean hasConditions(Request request) {
+        return request.header("If-None-Match") != null || request.header("If-Modified-Since") != null;
+    }
+
+    @Override
+    public String toString() {
+        return "HttpCache{memoryMaxBytes=" + memoryMaxBytes
+                + ", memoryHits=" + getMemoryHits()
+                + ", revalidatedHits=" + getRevalidatedHits()
+                + ", staleHits=" + getStaleHits()
+                + ", diskHits=" + getDiskHits()
+                + ", misses=" + getMisses() + '}';
+    }
+
+    /**
+     * A response held in memory, with the request header values it varies on.
+     */
+    private static final class Entry {
+        private static final Pattern STALE_WHILE_REVALIDATE = Pattern.compile(
+                "(?:^|,)\\s*stale-while-revalidate\\s*=\\s*\"?(\\d+)", Pattern.CASE_INSENSITIVE);
+        private static final Pattern STALE_IF_ERROR = Pattern.compile(
+                "(?:^|,)\\s*stale-if-error\\s*=\\s*\"?(\\d+)", Pattern.CASE_INSENSITIVE);
+
+        private final Headers varyHeaders;
+        private final Protocol protocol;
+        private final String message;
+        private final Headers headers;
+        private final MediaType contentType;
+        private final byte[] body;
+        private final long sentMillis;
+        private final long receivedMillis;
+        private final long lifetimeMillis;
+
+        Entry(Request request, Response response, byte[] body, long lifetimeMillis) {
+            this(varyHeaders(request, response.headers()), response.protocol(), response.message(), response.headers(),
+                    response.body().contentType(), body, response.sentRequestAtMillis(),
+                    response.receivedResponseAtMillis(), lifetimeMillis);
+        }
+
+        private Entry(Headers varyHeaders, Protocol protocol, String message, Headers headers, MediaType contentType,
+                      byte[] body, long sentMillis, long receivedMillis, long lifetimeMillis) {
+            this.varyHeaders = varyHeaders;
+            this.protocol = protocol;
+            this.message = message;
+            this.headers = headers;
+            this.contentType = contentType;
+            this.body = body;
+            this.sentMillis = sentMillis;
+            this.receivedMillis = receivedMillis;
+            this.lifetimeMillis = lifetimeMillis;
+        }
+
+        boolean matches(Request request) {
+            for (String name : varyHeaders.names()) {
+                if (!Objects.equals(varyHeaders.values(name), request.headers(name))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        boolean isFresh(CacheControl requestCaching, long now) {
+            if (CacheControl.parse(headers).noCache()) {
+                return false;
+            }
+            long age = ageMillis(now);
+            long lifetime = lifetimeMillis;
+            if (requestCaching.maxAgeSeconds() != -1) {
+                lifetime = Math.min(lifetime, TimeUnit.SECONDS.toMillis(requestCaching.maxAgeSeconds()));
+            }
+            long minFresh = requestCaching.minFreshSeconds() == -1 ? 0 : TimeUnit.SECONDS.toMillis(requestCaching.minFreshSeconds());
+            long maxStale = 0;
+            if (requestCaching.maxStaleSeconds() != -1 && !CacheControl.parse(headers).mustRevalidate()) {
+                maxStale = TimeUnit.SECONDS.toMillis(requestCaching.maxStaleSeconds());
+            }
+            return age + minFresh < lifetime + maxStale;
+        }
+
+        /**
+         * Returns whether this stale entry is still within the given window and may be served stale at all.
+         */
+        boolean isServableStale(long windowMillis, long now) {
+            CacheControl caching = CacheControl.parse(headers);
+            if (windowMillis <= 0 || caching.noCache() || caching.mustRevalidate()) {
+                return false;
+            }
+            return ageMillis(now) - lifetimeMillis < windowMillis;
+        }
+
+        long staleWhileRevalidateMillis(long defaultMillis) {
+            return staleWhileRevalidateMillis(headers, defaultMillis);
+        }
+
+        long staleIfErrorMillis(long defaultMillis) {
+            return staleIfErrorMillis(headers, defaultMillis);
+        }
+
+        static long staleWhileRevalidateMillis(Headers headers, long defaultMillis) {
+            return directiveMillis(headers, STALE_WHILE_REVALIDATE, defaultMillis);
+        }
+
+        static long staleIfErrorMillis(Headers headers, long defaultMillis) {
+            return directiveMillis(headers, STALE_IF_ERROR, defaultMillis);
+        }
+
+        private static long directiveMillis(Headers headers, Pattern directive, long defaultMillis) {
+            // OkHttp's CacheControl does not parse the RFC 5861 extensions
+            for (String value : headers.values("Cache-Control")) {
+                Matcher matcher = directive.matcher(value);
+                if (matcher.find()) {
+                    try {
+                        return TimeUnit.SECONDS.toMillis(Long.parseLong(matcher.group(1)));
+                    } catch (NumberFormatException e) {
+                        return Long.MAX_VALUE;
+                    }
+                }
+            }
+            return defaultMillis;
+        }
+
+        long ageMillis(long now) {
+            Date date = headers.getDate("Date");
+            long apparentAge = date == null ? 0 : Math.max(0, receivedMillis - date.getTime());
+            String ageHeader = headers.get("Age");
+            long receivedAge = apparentAge;
+            if (ageHeader != null) {
+                try {
+                    receivedAge = Math.max(apparentAge, TimeUnit.SECONDS.toMillis(Long.parseLong(ageHeader.trim())));
+                } catch (NumberFormatException ignored) {
+                    // an invalid Age is ignored
+                }
+            }
+            return receivedAge + (receivedMillis - sentMillis) + (now - receivedMillis);
+        }
+
+        boolean hasValidator() {
+            return headers.get("ETag") != null || headers.get("Last-Modified") != null;
+        }
+
+        Request conditional(Request request) {
+            Request.Builder builder = request.newBuilder();
+            String etag = headers.get("ETag");
+            if (etag != null) {
+                builder.header("If-None-Match", etag);
+            } else {
+                builder.header("If-Modified-Since", headers.get("Last-Modified"));
+            }
+            return builder.build();
+        }
+
+        /**
+         * Returns this entry with its headers updated from a 304 response, as RFC 7234 section 4.3.4 requires.
+         */
+        Entry refresh(Response notModified) {
+            Headers.Builder merged = headers.newBuilder();
+            for (String name : notModified.headers().names()) {
+                if (!"Content-Length".equalsIgnoreCase(name) && !"Content-Encoding".equalsIgnoreCase(name)) {
+                    merged.removeAll(name);
+                    for (String value : notModified.headers(name)) {
+                        merged.add(name, value);
+                    }
+                }
+            }
+            Headers refreshedHeaders = merged.build();
+            long lifetime = freshnessLifetime(refreshedHeaders, notModified.request().url().query() != null,
+                    notModified.receivedResponseAtMillis());
+            return new Entry(varyHeaders, protocol, message, refreshedHeaders, contentType, body,
+                    notModified.sentRequestAtMillis(), notModified.receivedResponseAtMillis(), lifetime);
+        }
+
+        Response response(Request request) {
+            return new Response.Builder()
+                    .request(request)
+                    .protocol(protocol)
+                    .code(200)
+                    .message(message)
+                    .headers(headers)
+                    .body(ResponseBody.create(contentType, body))
+                    .sentRequestAtMillis(sentMillis)
+                    .receivedResponseAtMillis(receivedMillis)
+                    .build();
+        }
+
+        Response stale(Request request, String warning) {
+            return response(request).newBuilder()
+                    .addHeader("Warning", warning)
+                    .build();
+        }
+
+        static long freshnessLifetime(Response response) {
+            return freshnessLifetime(response.headers(), response.request().url().query() != null,
+                    response.receivedResponseAtMillis());
+        }
+
+        private static long freshnessLifetime(Headers headers, boolean hasQuery, long receivedMillis) {
+            CacheControl caching = CacheControl.parse(headers);
+            if (caching.maxAgeSeconds() != -1) {
+                return TimeUnit.SECONDS.toMillis(caching.maxAgeSeconds());
+            }
+            Date date = headers.getDate("Date");
+            long served = date == null ? receivedMillis : date.getTime();
+            Date expires = headers.getDate("Expires");
+            if (expires != null) {
+                return Math.max(0, expires.getTime() - served);
+            }
+            Date lastModified = headers.getDate("Last-Modified");
+            if (lastModified != null && !hasQuery) {
+                return Math.max(0, (served - lastModified.getTime()) / 10);
+            }
+            return 0;
+        }
+
+        private static Headers varyHeaders(Request request, Headers responseHeaders) {
+            Headers.Builder builder = new Headers.Builder();
+            for (String vary : responseHeaders.values("Vary")) {
+                for (String name : vary.split(",")) {
+                    name = name.trim();
+                    if (!name.isEmpty()) {
+                        for (String value : request.headers(name)) {
+                            builder.add(name, value);
+                        }
+                        if (request.header(name) == null) {
+                            builder.add(name, "");
+                        }
+                    }
+                }
+            }
+            return builder.build();
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private final HttpCache cache;
+
+        public Builder() {
+            cache = new HttpCache();
+        }
+
+        /**
+         * Enables the memory tier with the given capacity for response bodies; 0 (the default) disables it.
+         */
+        public Builder memoryMaxBytes(long memoryMaxBytes) {
+            cache.memoryMaxBytes = memoryMaxBytes;
+            return this;
+        }
+
+        /**
+         * Sets the largest response body kept in memory.
+         */
+        public Builder maxEntryBytes(long maxEntryBytes) {
+            cache.maxEntryBytes = maxEntryBytes;
+            return this;
+        }
+
+        /**
+         * Sets how long past its freshness a memory entry is served while being revalidated in the background,
+         * for responses without a {@code stale-while-revalidate} directive; 0 (the default) disables it.
+         */
+        public Builder staleWhileRevalidateMillis(long staleWhileRevalidateMillis) {
+            cache.staleWhileRevalidateMillis = staleWhileRevalidateMillis;
+            return this;
+        }
+
+        /**
+         * Sets how long past its freshness a memory entry is served when the server fails, for responses without
+         * a {@code stale-if-error} directive; 0 (the default) disables it.
+         */
+        public Builder staleIfErrorMillis(long staleIfErrorMillis) {
+            cache.staleIfErrorMillis = staleIfErrorMillis;
+            return this;
+        }
+
+        /**
+         * Enables the disk tier in the given directory. The directory must not be used by another cache.
+         */
+        public Builder directory(Path directory, long maxSizeBytes) {
+            cache.diskCache = new Cache(directory.toFile(), maxSizeBytes);
+            return this;
+        }
+
+        public HttpCache build() {
+            if (cache.memoryMaxBytes < 0 || cache.maxEntryBytes < 0) {
+                throw new IllegalArgumentException("cache sizes must not be negative");
+            }
+            if (cache.staleWhileRevalidateMillis < 0 || cache.staleIfErrorMillis < 0) {
+                throw new IllegalArgumentException("stale windows must not be negative");
+            }
+            return cache;
+        }
+    }
+}
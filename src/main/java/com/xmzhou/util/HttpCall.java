@@ -0,0 +1,32 @@
+package com.xmzhou.util;
+
+import okhttp3.Callback;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+
+/**
+ * A request execution that may span several OkHttp calls, such as retries or hedges.
+ */
+interface HttpCall {
+
+    Response execute() throws IOException;
+
+    /**
+     * Runs the call on the client's dispatcher.
+     */
+    default void enqueue(Callback callback) {
+        enqueue(callback, null);
+    }
+
+    /**
+     * Runs the call as blocking calls on the given executor, or on the client's dispatcher if it is null.
+     */
+    void enqueue(Callback callback, Executor executor);
+
+    /**
+     * Cancels all running and pending calls.
+     */
+    void cancel();
+}
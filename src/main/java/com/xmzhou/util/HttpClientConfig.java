@@ -0,0 +1,367 @@
+package com.xmzhou.util;
+
+import okhttp3.Dns;
+import okhttp3.Interceptor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Configuration of the connection pool, dispatcher and interceptors behind {@link HttpUtil}
+ * and its named {@link HttpClientProfile client profiles}.
+ * <p>
+ * Defaults match OkHttp: 5 idle connections kept alive for 5 minutes, at most 64 concurrent
+ * async requests in total and 5 per host. A built configuration cannot be changed; build a new one and pass it to
+ * {@link HttpClientProfile#configure(HttpClientConfig)} instead.
+ *
+ * <pre>
+ *  Usage:
+ * <code>HttpUtil.configure(HttpClientConfig.builder()
+ *          .maxRequestsPerHost(32)
+ *          .build());</code>
+ * </pre>
+ */
+public class HttpClientConfig {
+    private int maxIdleConnections = 5;
+    private long keepAliveSeconds = 300;
+    private int maxRequests = 64;
+    private int maxRequestsPerHost = 5;
+    private ExecutorService executorService;
+    private Executor asyncExecutor;
+    private RetryPolicy retryPolicy;
+    private RetryBudget retryBudget = RetryBudget.builder().build();
+    private CircuitBreaker circuitBreaker;
+    private RateLimiter rateLimiter;
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private HttpCache cache;
+    private RequestCompression requestCompression;
+    private boolean h2cPriorKnowledge;
+    private Dns dns;
+    private final List<Interceptor> interceptors = new ArrayList<>();
+    private final List<Interceptor> networkInterceptors = new ArrayList<>();
+
+    private HttpClientConfig() {
+    }
+
+    private HttpClientConfig(HttpClientConfig other) {
+        maxIdleConnections = other.maxIdleConnections;
+        keepAliveSeconds = other.keepAliveSeconds;
+        maxRequests = other.maxRequests;
+        maxRequestsPerHost = other.maxRequestsPerHost;
+        executorService = other.executorService;
+        asyncExecutor = other.asyncExecutor;
+        retryPolicy = other.retryPolicy;
+        retryBudget = other.retryBudget;
+        circuitBreaker = other.circuitBreaker;
+        rateLimiter = other.rateLimiter;
+        concurrencyLimiter = other.concurrencyLimiter;
+        cache = other.cache;
+        requestCompression = other.requestCompression;
+        h2cPriorKnowledge = other.h2cPriorKnowledge;
+        dns = other.dns;
+        interceptors.addAll(other.interceptors);
+        networkInterceptors.addAll(other.networkInterceptors);
+    }
+
+    public int getMaxIdleConnections() {
+        return maxIdleConnections;
+    }
+
+    public long getKeepAliveSeconds() {
+        return keepAliveSeconds;
+    }
+
+    public int getMaxRequests() {
+        return maxRequests;
+    }
+
+    public int getMaxRequestsPerHost() {
+        return maxRequestsPerHost;
+    }
+
+    /**
+     * Returns the executor that runs async calls, or null for OkHttp's default cached thread pool.
+     *
+     * @return the dispatcher executor
+     */
+    public ExecutorService getExecutorService() {
+        return executorService;
+    }
+
+    /**
+     * Returns the executor that {@code executeAsync()} runs blocking calls on, or null to enqueue calls on the dispatcher.
+     *
+     * @return the async executor
+     */
+    public Executor getAsyncExecutor() {
+        return asyncExecutor;
+    }
+
+    /**
+     * Returns the retry policy of requests that do not set their own, or null to not retry them.
+     *
+     * @return the default retry policy
+     */
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * Returns the budget that all retries of the client draw from, or null for unlimited retries.
+     *
+     * @return the retry budget
+     */
+    public RetryBudget getRetryBudget() {
+        return retryBudget;
+    }
+
+    /**
+     * Returns the circuit breaker in front of the client's calls, or null for none.
+     *
+     * @return the circuit breaker
+     */
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * Returns the rate limiter applied per host to requests that do not set their own, or null for none.
+     *
+     * @return the rate limiter
+     */
+    public RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * Returns the adaptive limit on in-flight calls per host, or null for none.
+     *
+     * @return the concurrency limiter
+     */
+    public AdaptiveConcurrencyLimiter getConcurrencyLimiter() {
+        return concurrencyLimiter;
+    }
+
+    /**
+     * Returns the response cache, or null for none.
+     *
+     * @return the response cache
+     */
+    public HttpCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Returns the compression of request bodies, or null to send them uncompressed.
+     *
+     * @return the request compression
+     */
+    public RequestCompression getRequestCompression() {
+        return requestCompression;
+    }
+
+    /**
+     * Returns whether requests are sent as cleartext HTTP/2 without an upgrade, instead of HTTP/1.1.
+     *
+     * @return true for HTTP/2 with prior knowledge
+     */
+    public boolean isH2cPriorKnowledge() {
+        return h2cPriorKnowledge;
+    }
+
+    /**
+     * Returns the resolver of host names, or null for {@link Dns#SYSTEM}.
+     *
+     * @return the DNS resolver
+     */
+    public Dns getDns() {
+        return dns;
+    }
+
+    /**
+     * Returns the application interceptors added after the built-in logging and timeout interceptors.
+     *
+     * @return the extra application interceptors
+     */
+    public List<Interceptor> getInterceptors() {
+        return Collections.unmodifiableList(interceptors);
+    }
+
+    /**
+     * Returns the extra network interceptors.
+     *
+     * @return the extra network interceptors
+     */
+    public List<Interceptor> getNetworkInterceptors() {
+        return Collections.unmodifiableList(networkInterceptors);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private final HttpClientConfig config;
+
+        public Builder() {
+            config = new HttpClientConfig();
+        }
+
+        /**
+         * Sets the number of idle connections kept in the pool.
+         */
+        public Builder maxIdleConnections(int maxIdleConnections) {
+            config.maxIdleConnections = maxIdleConnections;
+            return this;
+        }
+
+        /**
+         * Sets how long an idle connection is kept before it is closed.
+         */
+        public Builder keepAliveSeconds(long keepAliveSeconds) {
+            config.keepAliveSeconds = keepAliveSeconds;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of async requests running at once; further calls are queued.
+         */
+        public Builder maxRequests(int maxRequests) {
+            config.maxRequests = maxRequests;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of async requests running at once against a single host. Only requests run by the
+         * client's dispatcher are counted; synchronous calls and calls on an {@link #asyncExecutor(Executor)} are not.
+         */
+        public Builder maxRequestsPerHost(int maxRequestsPerHost) {
+            config.maxRequestsPerHost = maxRequestsPerHost;
+            return this;
+        }
+
+        /**
+         * Sets the executor that runs async calls. The caller stays responsible for shutting it down.
+         */
+        public Builder executorService(ExecutorService executorService) {
+            config.executorService = executorService;
+            return this;
+        }
+
+        /**
+         * Makes {@code executeAsync()} run each call as a blocking {@code execute()} on the given executor instead of
+         * enqueuing it on the dispatcher, e.g. {@link HttpUtil#virtualThreadExecutor()} on JDK 21 or later.
+         * Such calls are bounded by the executor and the connection pool, not by the dispatcher limits.
+         */
+        public Builder asyncExecutor(Executor asyncExecutor) {
+            config.asyncExecutor = asyncExecutor;
+            return this;
+        }
+
+        /**
+         * Sets the retry policy of requests that do not call {@code retry(RetryPolicy)} themselves.
+         */
+        public Builder retryPolicy(RetryPolicy retryPolicy) {
+            config.retryPolicy = retryPolicy;
+            return this;
+        }
+
+        /**
+         * Sets the budget that caps retries across all requests of the client; null lifts the cap.
+         * Defaults to retries of at most 10% of requests per host.
+         */
+        public Builder retryBudget(RetryBudget retryBudget) {
+            config.retryBudget = retryBudget;
+            return this;
+        }
+
+        /**
+         * Sets a circuit breaker that fails calls fast while their host keeps failing or responding slowly.
+         */
+        public Builder circuitBreaker(CircuitBreaker circuitBreaker) {
+            config.circuitBreaker = circuitBreaker;
+            return this;
+        }
+
+        /**
+         * Sets the rate limiter applied per host to requests that do not call {@code rateLimit(...)} themselves.
+         */
+        public Builder rateLimiter(RateLimiter rateLimiter) {
+            config.rateLimiter = rateLimiter;
+            return this;
+        }
+
+        /**
+         * Sets an adaptive limit on in-flight calls per host, on top of the static dispatcher limits.
+         */
+        public Builder concurrencyLimiter(AdaptiveConcurrencyLimiter concurrencyLimiter) {
+            config.concurrencyLimiter = concurrencyLimiter;
+            return this;
+        }
+
+        /**
+         * Caches responses on disk and in memory. A cache must not be shared by clients with different settings.
+         */
+        public Builder cache(HttpCache cache) {
+            config.cache = cache;
+            return this;
+        }
+
+        /**
+         * Compresses the request bodies of all requests that do not set their own compression.
+         */
+        public Builder requestCompression(RequestCompression requestCompression) {
+            config.requestCompression = requestCompression;
+            return this;
+        }
+
+        /**
+         * Speaks HTTP/2 over plaintext to servers known to support it (h2c with prior knowledge), so requests to a
+         * host share one connection as multiplexed streams. HTTPS URLs fail on such a client. The number of streams
+         * on a connection is bounded by the server's {@code SETTINGS_MAX_CONCURRENT_STREAMS}, beyond which another
+         * connection is opened; this client does not limit it further.
+         */
+        public Builder h2cPriorKnowledge(boolean h2cPriorKnowledge) {
+            config.h2cPriorKnowledge = h2cPriorKnowledge;
+            return this;
+        }
+
+        /**
+         * Resolves host names with the given resolver, e.g. a {@link CachingDns}, instead of {@link Dns#SYSTEM}.
+         */
+        public Builder dns(Dns dns) {
+            config.dns = dns;
+            return this;
+        }
+
+        /**
+         * Adds an application interceptor to the client's chain.
+         */
+        public Builder addInterceptor(Interceptor interceptor) {
+            config.interceptors.add(interceptor);
+            return this;
+        }
+
+        /**
+         * Adds a network interceptor to the client's chain.
+         */
+        public Builder addNetworkInterceptor(Interceptor interceptor) {
+            config.networkInterceptors.add(interceptor);
+            return this;
+        }
+
+        public HttpClientConfig build() {
+            if (config.maxIdleConnections < 0 || config.keepAliveSeconds <= 0) {
+                throw new IllegalArgumentException("invalid connection pool settings");
+            }
+            if (config.maxRequests < 1 || config.maxRequestsPerHost < 1) {
+                throw new IllegalArgumentException("maxRequests and maxRequestsPerHost must be at least 1");
+            }
+            // a copy, so that reusing the builder does not change a configuration already in use
+            return new HttpClientConfig(config);
+        }
+    }
+}
@@ -0,0 +1,422 @@
+package com.xmzhou.util;
+
+import com.moczul.ok2curl.CurlInterceptor;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Connection;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <h3> Named, isolated HTTP client.</h3>
+ *
+ * <p>
+ * Each profile owns its connection pool, dispatcher limits and extra interceptors, so a slow dependency
+ * can only exhaust its own profile. Profiles are derived from one base client via {@link OkHttpClient#newBuilder()},
+ * sharing the common interceptors, and by default their dispatchers run on one shared thread pool; the
+ * per-profile dispatcher limits still bound how many of those threads each profile can occupy.
+ * </p>
+ *
+ * <pre>
+ *  Usage:
+ * <code>HttpUtil.client("billing", HttpClientConfig.builder().maxRequestsPerHost(16).build());
+ *  HttpUtil.client("billing")
+ *          .get(url)
+ *          .execute();</code>
+ * </pre>
+ */
+public class HttpClientProfile {
+    private static final Logger LOG = LoggerFactory.getLogger(HttpUtil.class);
+
+    /**
+     * How long a warm-up call waits for the other calls to connect.
+     */
+    private static final long WARM_UP_TIMEOUT_SECONDS = 10;
+
+    /**
+     * Executor shared by all dispatchers that are not given their own, equivalent to OkHttp's default.
+     */
+    private static final ExecutorService SHARED_EXECUTOR = new ThreadPoolExecutor(0, Integer.MAX_VALUE,
+            60, TimeUnit.SECONDS, new SynchronousQueue<>(), new DispatcherThreadFactory());
+
+    private static volatile OkHttpClient baseClient;
+
+    private final String name;
+    private volatile HttpClientConfig config;
+    private volatile OkHttpClient client;
+    private final SingleFlight singleFlight = new SingleFlight();
+
+    HttpClientProfile(String name, HttpClientConfig config) {
+        this.name = name;
+        this.config = config;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Creates a GET request builder on this client.
+     *
+     * @param url the URL to send the GET request to
+     * @return a RequestBuilder for the GET request
+     */
+    public HttpUtil.RequestBuilder get(String url) {
+        return new HttpUtil.RequestBuilder(this, url, HttpUtil.HttpMethod.GET);
+    }
+
+    /**
+     * Creates a POST request builder on this client.
+     *
+     * @param url the URL to send the POST request to
+     * @return a RequestBuilder for the POST request
+     */
+    public HttpUtil.RequestBuilder post(String url) {
+        return new HttpUtil.RequestBuilder(this, url, HttpUtil.HttpMethod.POST);
+    }
+
+    /**
+     * Creates a PUT request builder on this client.
+     *
+     * @param url the URL to send the PUT request to
+     * @return a RequestBuilder for the PUT request
+     */
+    public HttpUtil.RequestBuilder put(String url) {
+        return new HttpUtil.RequestBuilder(this, url, HttpUtil.HttpMethod.PUT);
+    }
+
+    /**
+     * Creates a DELETE request builder on this client.
+     *
+     * @param url the URL to send the DELETE request to
+     * @return a RequestBuilder for the DELETE request
+     */
+    public HttpUtil.RequestBuilder delete(String url) {
+        return new HttpUtil.RequestBuilder(this, url, HttpUtil.HttpMethod.DELETE);
+    }
+
+    /**
+     * Creates a POST request builder on this client for multipart uploads.
+     *
+     * @param url the URL to send the POST request to
+     * @return a RequestBuilder for the POST request
+     */
+    public HttpUtil.RequestBuilder uploadFile(String url) {
+        return new HttpUtil.RequestBuilder(this, url, HttpUtil.HttpMethod.POST);
+    }
+
+    /**
+     * Returns a snapshot of this client's queued and running calls, pooled connections, retries and coalesced
+     * requests.
+     *
+     * @return the client statistics
+     */
+    public ClientStats stats() {
+        return new ClientStats(client(), config.getRetryBudget(), singleFlight.coalescedRequests());
+    }
+
+    /**
+     * Opens connections to the given servers ahead of traffic and leaves them idle in this client's pool, so the
+     * first requests after a start skip the TCP and TLS handshakes.
+     * <p>
+     * Sends {@code connectionsPerHost} concurrent {@code HEAD} requests to each host and holds each one on its
+     * connection until all requests to that host are connected, which forces distinct connections. URLs of the
+     * same host share its connections, so only the first of them is requested. HTTP/2 connections are
+     * multiplexed, so one of them per host is enough. The pool keeps at most
+     * {@link HttpClientConfig#getMaxIdleConnections()} idle connections, for at most its keep-alive time.
+     *
+     * @param urls               the servers to connect to, e.g. {@code https://api.example.com}
+     * @param connectionsPerHost the number of connections to open to each server
+     * @return the number of distinct connections that completed a request, including ones already pooled
+     */
+    public int warmUp(List<String> urls, int connectionsPerHost) {
+        if (connectionsPerHost < 1) {
+            throw new IllegalArgumentException("connectionsPerHost must be at least 1");
+        }
+        // the dispatcher limits calls per host name, so URLs of the same host share its connections
+        Map<String, Request> requests = new LinkedHashMap<>();
+        for (String url : urls) {
+            HttpUrl parsed = HttpUrl.get(url);
+            requests.putIfAbsent(parsed.host(), new Request.Builder().url(parsed).head().build());
+        }
+        int calls = requests.size() * connectionsPerHost;
+        if (calls > config.getMaxIdleConnections()) {
+            LOG.warn("Warming up {} connections, but the pool keeps only {} idle", calls, config.getMaxIdleConnections());
+        }
+        Set<Connection> connections = Collections.newSetFromMap(new ConcurrentHashMap<>());
+        CountDownLatch completed = new CountDownLatch(calls);
+        Dispatcher dispatcher = new Dispatcher(SHARED_EXECUTOR);
+        dispatcher.setMaxRequests(calls);
+        dispatcher.setMaxRequestsPerHost(connectionsPerHost);
+        // the same pool and connection settings, without the application interceptors, e.g. limiters and caches
+        OkHttpClient.Builder builder = client().newBuilder().dispatcher(dispatcher);
+        builder.interceptors().clear();
+        OkHttpClient warmUpClient = builder
+                .addNetworkInterceptor(chain -> {
+                    Connection connection = chain.connection();
+                    WarmUpCall warmUpCall = chain.request().tag(WarmUpCall.class);
+                    warmUpCall.connected();
+                    if (connection != null && !isMultiplexed(connection.protocol())) {
+                        try {
+                            warmUpCall.hostConnected.await(WARM_UP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new InterruptedIOException("Interrupted while warming up connections");
+                        }
+                    }
+                    Response response = chain.proceed(chain.request());
+                    if (connection != null) {
+                        connections.add(connection);
+                    }
+                    return response;
+                })
+                .build();
+        for (Request request : requests.values()) {
+            // the calls to one host wait for each other, not for slower hosts
+            CountDownLatch hostConnected = new CountDownLatch(connectionsPerHost);
+            for (int i = 0; i < connectionsPerHost; i++) {
+                WarmUpCall warmUpCall = new WarmUpCall(hostConnected);
+                warmUpClient.newCall(request.newBuilder().tag(WarmUpCall.class, warmUpCall).build()).enqueue(new Callback() {
+                    @Override
+                    public void onFailure(Call call, IOException e) {
+                        LOG.warn("Connection warm-up to {} failed: {}", request.url(), e.toString());
+                        // release the calls waiting for this one to connect, unless it connected before failing
+                        warmUpCall.connected();
+                        completed.countDown();
+                    }
+
+                    @Override
+                    public void onResponse(Call call, Response response) {
+                        response.close();
+                        completed.countDown();
+                    }
+                });
+            }
+        }
+        try {
+            completed.await(2 * WARM_UP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Warmed up {} connections of {}", connections.size(), this);
+        }
+        return connections.size();
+    }
+
+    /**
+     * A warm-up call, which counts down the latch of its host once, when it connects or fails.
+     */
+    private static final class WarmUpCall {
+        private final CountDownLatch hostConnected;
+        private final AtomicBoolean counted = new AtomicBoolean();
+
+        WarmUpCall(CountDownLatch hostConnected) {
+            this.hostConnected = hostConnected;
+        }
+
+        void connected() {
+            if (counted.compareAndSet(false, true)) {
+                hostConnected.countDown();
+            }
+        }
+    }
+
+    private static boolean isMultiplexed(Protocol protocol) {
+        return protocol == Protocol.HTTP_2 || protocol == Protocol.H2_PRIOR_KNOWLEDGE;
+    }
+
+    SingleFlight singleFlight() {
+        return singleFlight;
+    }
+
+    public HttpClientConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Applies a new configuration.
+     * <p>
+     * Before first use the configuration is simply recorded. Afterwards, dispatcher limits are updated in place;
+     * a new executor, new pool settings, a new protocol or resolver, or new interceptors, including a new cache,
+     * circuit breaker or concurrency limiter, swap in a fresh client for subsequent calls while in-flight calls
+     * complete on the old one.
+     *
+     * @param config the client configuration
+     */
+    public void configure(HttpClientConfig config) {
+        Objects.requireNonNull(config, "config");
+        synchronized (this) {
+            HttpClientConfig previous = this.config;
+            this.config = config;
+            OkHttpClient current = client;
+            if (current == null) {
+                return;
+            }
+            boolean samePool = previous.getMaxIdleConnections() == config.getMaxIdleConnections()
+                    && previous.getKeepAliveSeconds() == config.getKeepAliveSeconds();
+            boolean sameExecutor = previous.getExecutorService() == config.getExecutorService();
+            boolean sameInterceptors = previous.getInterceptors().equals(config.getInterceptors())
+                    && previous.getNetworkInterceptors().equals(config.getNetworkInterceptors())
+                    && previous.getCircuitBreaker() == config.getCircuitBreaker()
+                    && previous.getConcurrencyLimiter() == config.getConcurrencyLimiter()
+                    && previous.getCache() == config.getCache();
+            boolean sameProtocol = previous.isH2cPriorKnowledge() == config.isH2cPriorKnowledge()
+                    && previous.getDns() == config.getDns();
+            if (sameExecutor) {
+                current.dispatcher().setMaxRequests(config.getMaxRequests());
+                current.dispatcher().setMaxRequestsPerHost(config.getMaxRequestsPerHost());
+            }
+            if (samePool && sameExecutor && sameInterceptors && sameProtocol) {
+                return;
+            }
+            client = build(config,
+                    samePool ? current.connectionPool() : connectionPool(config),
+                    sameExecutor ? current.dispatcher() : dispatcher(config));
+            if (!samePool) {
+                // idle connections of the old pool will not be reused any more
+                current.connectionPool().evictAll();
+            }
+        }
+    }
+
+    /**
+     * Returns the OkHttpClient of this profile, building it on first use.
+     */
+    OkHttpClient client() {
+        OkHttpClient result = client;
+        if (result == null) {
+            synchronized (this) {
+                result = client;
+                if (result == null) {
+                    HttpClientConfig config = this.config;
+                    result = build(config, connectionPool(config), dispatcher(config));
+                    client = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static OkHttpClient build(HttpClientConfig config, ConnectionPool connectionPool, Dispatcher dispatcher) {
+        OkHttpClient.Builder builder = baseClient().newBuilder()
+                .connectionPool(connectionPool)
+                .dispatcher(dispatcher);
+        if (config.getDns() != null) {
+            builder.dns(config.getDns());
+        }
+        if (config.isH2cPriorKnowledge()) {
+            builder.protocols(Collections.singletonList(Protocol.H2_PRIOR_KNOWLEDGE));
+        }
+        if (config.getCache() != null) {
+            // cache hits are served before the breaker and limiter see the call
+            builder.cache(config.getCache().diskCache())
+                    .addInterceptor(config.getCache());
+        }
+        if (config.getCircuitBreaker() != null) {
+            builder.addInterceptor(config.getCircuitBreaker());
+        }
+        if (config.getConcurrencyLimiter() != null) {
+            builder.addInterceptor(config.getConcurrencyLimiter());
+        }
+        for (Interceptor interceptor : config.getInterceptors()) {
+            builder.addInterceptor(interceptor);
+        }
+        for (Interceptor interceptor : config.getNetworkInterceptors()) {
+            builder.addNetworkInterceptor(interceptor);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Initializes the base OkHttpClient, holding the interceptors shared by all profiles, in a thread-safe manner.
+     */
+    private static OkHttpClient baseClient() {
+        if (baseClient == null) {
+            synchronized (HttpClientProfile.class) {
+                if (baseClient == null) {
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("Init OkHttpClient");
+                    }
+                    baseClient = new OkHttpClient.Builder()
+                            .addInterceptor(new DebugLoggingInterceptor(LOG))
+                            .addInterceptor(new ContentDecodingInterceptor())
+                            .addInterceptor(httpTimeoutConfigInterceptor())
+                            .addNetworkInterceptor(DebugLoggingInterceptor.whenDebugEnabled(LOG, new CurlInterceptor(LOG::debug)))
+                            .build();
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("Init OkHttpClient Successfully");
+                    }
+                }
+            }
+        }
+        return baseClient;
+    }
+
+    private static Interceptor httpTimeoutConfigInterceptor() {
+        return chain -> {
+            Request request = chain.request();
+            HttpUtil.HttpConfig config = request.tag(HttpUtil.HttpConfig.class);
+            config = config == null ? new HttpUtil.HttpConfig() : config;
+            return chain
+                    .withConnectTimeout(Optional.of(config.getConnectTimeoutSeconds()).orElse(60), TimeUnit.SECONDS)
+                    .withReadTimeout(Optional.of(config.getReadTimeoutSeconds()).orElse(60), TimeUnit.SECONDS)
+                    .withWriteTimeout(Optional.of(config.getWriteTimeoutSeconds()).orElse(60), TimeUnit.SECONDS)
+                    .proceed(request);
+        };
+    }
+
+    private static ConnectionPool connectionPool(HttpClientConfig config) {
+        return new ConnectionPool(config.getMaxIdleConnections(), config.getKeepAliveSeconds(), TimeUnit.SECONDS);
+    }
+
+    private static Dispatcher dispatcher(HttpClientConfig config) {
+        Dispatcher dispatcher = new Dispatcher(config.getExecutorService() == null
+                ? SHARED_EXECUTOR
+                : config.getExecutorService());
+        dispatcher.setMaxRequests(config.getMaxRequests());
+        dispatcher.setMaxRequestsPerHost(config.getMaxRequestsPerHost());
+        return dispatcher;
+    }
+
+    @Override
+    public String toString() {
+        return "HttpClientProfile{" + name + '}';
+    }
+
+    private static final class DispatcherThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            return new Thread(runnable, "HttpUtil Dispatcher-" + count.incrementAndGet());
+        }
+    }
+}
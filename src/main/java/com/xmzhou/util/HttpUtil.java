@@ -1,18 +1,25 @@
 package com.xmzhou.util;
 
 import ch.qos.logback.classic.Level;
-import com.moczul.ok2curl.CurlInterceptor;
 import okhttp3.*;
-import okhttp3.logging.HttpLoggingInterceptor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.Serializable;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
 
 /**
  * <h3> HTTP Request Tool, based on okhttp3.</h3>
@@ -38,6 +45,14 @@ import java.util.concurrent.TimeUnit;
 public class HttpUtil {
     private static final Logger LOG = LoggerFactory.getLogger(HttpUtil.class);
 
+    /**
+     * Name of the client profile used by the static request methods.
+     */
+    public static final String DEFAULT_CLIENT_NAME = "default";
+
+    private static final ConcurrentMap<String, HttpClientProfile> CLIENTS = new ConcurrentHashMap<>();
+    private static final HttpClientProfile DEFAULT_CLIENT = client(DEFAULT_CLIENT_NAME);
+
     private HttpUtil() {
     }
 
@@ -48,7 +63,7 @@ public class HttpUtil {
      * @return a RequestBuilder for the GET request
      */
     public static RequestBuilder get(String url) {
-        return new RequestBuilder(url, HttpMethod.GET);
+        return new RequestBuilder(DEFAULT_CLIENT, url, HttpMethod.GET);
     }
 
     /**
@@ -58,7 +73,7 @@ public class HttpUtil {
      * @return a RequestBuilder for the POST request
      */
     public static RequestBuilder post(String url) {
-        return new RequestBuilder(url, HttpMethod.POST);
+        return new RequestBuilder(DEFAULT_CLIENT, url, HttpMethod.POST);
     }
 
     /**
@@ -68,7 +83,7 @@ public class HttpUtil {
      * @return a RequestBuilder for the PUT request
      */
     public static RequestBuilder put(String url) {
-        return new RequestBuilder(url, HttpMethod.PUT);
+        return new RequestBuilder(DEFAULT_CLIENT, url, HttpMethod.PUT);
     }
 
     /**
@@ -78,7 +93,7 @@ public class HttpUtil {
      * @return a RequestBuilder for the DELETE request
      */
     public static RequestBuilder delete(String url) {
-        return new RequestBuilder(url, HttpMethod.DELETE);
+        return new RequestBuilder(DEFAULT_CLIENT, url, HttpMethod.DELETE);
     }
 
     /**
@@ -88,7 +103,7 @@ public class HttpUtil {
      * @return a RequestBuilder for the POST request
      */
     public static RequestBuilder uploadFile(String url) {
-        return new RequestBuilder(url, HttpMethod.POST);
+        return new RequestBuilder(DEFAULT_CLIENT, url, HttpMethod.POST);
     }
 
     public static void setLogLevel(String level) {
@@ -117,80 +132,127 @@ public class HttpUtil {
         }
     }
 
+    /**
+     * Sets the maximum number of body bytes written to the debug log per request and per response.
+     * Larger bodies are truncated (responses) or omitted (requests). Defaults to 64 KiB.
+     *
+     * @param maxBodyBytes the body logging cap in bytes
+     */
+    public static void setLogBodyLimit(long maxBodyBytes) {
+        DebugLoggingInterceptor.setMaxBodyBytes(maxBodyBytes);
+    }
+
+    /**
+     * Configures the connection pool and dispatcher of the shared client.
+     * <p>
+     * May be called before first use or at any time later; in-flight calls are not interrupted.
+     *
+     * @param config the client configuration
+     */
+    public static void configure(HttpClientConfig config) {
+        DEFAULT_CLIENT.configure(config);
+    }
+
+    /**
+     * Returns a snapshot of the shared client's queued and running calls and pooled connections.
+     *
+     * @return the client statistics
+     */
+    public static ClientStats stats() {
+        return DEFAULT_CLIENT.stats();
+    }
+
+    /**
+     * Opens connections to the given servers on the shared client ahead of traffic, see
+     * {@link HttpClientProfile#warmUp(List, int)}.
+     *
+     * @param urls               the servers to connect to, e.g. {@code https://api.example.com}
+     * @param connectionsPerHost the number of connections to open to each server
+     * @return the number of connections ready in the pool
+     */
+    public static int warmUp(List<String> urls, int connectionsPerHost) {
+        return DEFAULT_CLIENT.warmUp(urls, connectionsPerHost);
+    }
+
+    /**
+     * Returns the named client profile, creating it with the default configuration on first use.
+     * <p>
+     * Each profile has its own connection pool, dispatcher limits and interceptors, isolating its traffic
+     * from other profiles. The name {@value #DEFAULT_CLIENT_NAME} refers to the client behind {@link #get(String)} and friends.
+     *
+     * @param name the profile name
+     * @return the client profile
+     */
+    public static HttpClientProfile client(String name) {
+        Objects.requireNonNull(name, "name");
+        return CLIENTS.computeIfAbsent(name, n -> new HttpClientProfile(n, HttpClientConfig.builder().build()));
+    }
+
+    /**
+     * Returns the named client profile with the given configuration, creating it or reconfiguring it as needed.
+     *
+     * @param name   the profile name
+     * @param config the client configuration
+     * @return the client profile
+     */
+    public static HttpClientProfile client(String name, HttpClientConfig config) {
+        Objects.requireNonNull(config, "config");
+        HttpClientProfile created = new HttpClientProfile(name, config);
+        HttpClientProfile profile = CLIENTS.putIfAbsent(Objects.requireNonNull(name, "name"), created);
+        if (profile == null) {
+            return created;
+        }
+        profile.configure(config);
+        return profile;
+    }
+
+    /**
+     * Returns a new executor that starts a virtual thread per task, for use with
+     * {@link HttpClientConfig.Builder#asyncExecutor(Executor)} or {@link RequestBuilder#executeAsync(Executor)}.
+     *
+     * @return a virtual-thread-per-task executor
+     * @throws UnsupportedOperationException if the running JDK has no virtual threads (JDK 21 or later is required)
+     */
+    public static ExecutorService virtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            throw new UnsupportedOperationException("Virtual threads require JDK 21 or later", e);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Failed to create virtual thread executor", e);
+        }
+    }
+
     /**
      * Builder class for constructing HTTP requests.
      */
     public static class RequestBuilder {
-        private static volatile OkHttpClient httpClient;
-        private String url;
+        private final HttpClientProfile profile;
+        private final HttpUrl.Builder urlBuilder;
         private final Request.Builder requestBuilder;
         private RequestBody requestBody;
         private final HttpMethod httpMethod;
         private HttpConfig httpConfig;
+        private RetryPolicy retryPolicy;
+        private HedgePolicy hedgePolicy;
+        private RateLimiter rateLimiter;
+        private String rateLimitKey;
+        private String[] coalesceHeaders;
+        private RequestCompression compression;
 
-        private RequestBuilder(String url, HttpMethod httpMethod) {
+        RequestBuilder(HttpClientProfile profile, String url, HttpMethod httpMethod) {
             if (Objects.isNull(url) || url.isEmpty()) {
                 throw new IllegalArgumentException("request url is null");
             }
-            this.url = url;
-            initHttpClient();
+            this.urlBuilder = HttpUrl.get(url).newBuilder();
+            this.profile = profile;
+            profile.client();
             this.httpMethod = httpMethod;
             requestBuilder = new Request.Builder();
-            requestBuilder.url(this.url);
             httpConfig = HttpConfig.builder().build();
             requestBuilder.tag(HttpConfig.class, httpConfig);
         }
 
-        private Interceptor httpLoggingInterceptor() {
-            HttpLoggingInterceptor httpLoggingInterceptor = new HttpLoggingInterceptor(s -> {
-                if (LOG.isDebugEnabled()) {
-                    LOG.debug(s);
-                }
-            });
-            httpLoggingInterceptor.setLevel(HttpLoggingInterceptor.Level.BODY);
-            return httpLoggingInterceptor;
-        }
-
-        private Interceptor httpTimeoutConfigInterceptor() {
-            return chain -> {
-                Request request = chain.request();
-                HttpConfig config = request.tag(HttpConfig.class);
-                config = config == null ? new HttpConfig() : config;
-                return chain
-                        .withConnectTimeout(Optional.of(config.getConnectTimeoutSeconds()).orElse(60), TimeUnit.SECONDS)
-                        .withReadTimeout(Optional.of(config.getReadTimeoutSeconds()).orElse(60), TimeUnit.SECONDS)
-                        .withWriteTimeout(Optional.of(config.getWriteTimeoutSeconds()).orElse(60), TimeUnit.SECONDS)
-                        .proceed(request);
-            };
-        }
-
-        /**
-         * Initializes the OkHttpClient instance in a thread-safe manner.
-         */
-        private void initHttpClient() {
-            if (httpClient == null) {
-                synchronized (HttpUtil.class) {
-                    if (httpClient == null) {
-                        if (LOG.isDebugEnabled()) {
-                            LOG.debug("Init OkHttpClient");
-                        }
-                        httpClient = new OkHttpClient.Builder()
-                                .addInterceptor(httpLoggingInterceptor())
-                                .addInterceptor(httpTimeoutConfigInterceptor())
-                                .addNetworkInterceptor(new CurlInterceptor(s -> {
-                                    if (LOG.isDebugEnabled()) {
-                                        LOG.debug(s);
-                                    }
-                                }))
-                                .build();
-                        if (LOG.isDebugEnabled()) {
-                            LOG.debug("Init OkHttpClient Successfully");
-                        }
-                    }
-                }
-            }
-        }
-
         /**
          * Adds headers to the request.
          *
@@ -215,11 +277,7 @@ public class HttpUtil {
          * @return the current RequestBuilder instance
          */
         public RequestBuilder param(String key, String value) {
-            HttpUrl.Builder urlBuilder = HttpUrl.parse(this.url).newBuilder();
             urlBuilder.addQueryParameter(key, value);
-            HttpUrl httpUrl = urlBuilder.build();
-            requestBuilder.url(httpUrl);
-            this.url = httpUrl.toString();
             return this;
         }
 
@@ -231,15 +289,11 @@ public class HttpUtil {
          * @return the current RequestBuilder instance
          */
         public RequestBuilder params(Map<String, ?> params) {
-            HttpUrl.Builder urlBuilder = HttpUrl.parse(this.url).newBuilder();
             if (Objects.nonNull(params) && !params.isEmpty()) {
                 for (Map.Entry<String, ?> entry : params.entrySet()) {
                     urlBuilder.addQueryParameter(entry.getKey(), String.valueOf(entry.getValue()));
                 }
             }
-            HttpUrl httpUrl = urlBuilder.build();
-            requestBuilder.url(httpUrl);
-            this.url = httpUrl.toString();
             return this;
         }
 
@@ -268,16 +322,20 @@ public class HttpUtil {
         public RequestBuilder formData(Map<String, ?> form, List<UploadFile> files) {
             MultipartBody.Builder bodyBuilder = new MultipartBody.Builder();
             bodyBuilder.setType(MultipartBody.FORM);
+            boolean oneShot = false;
             for (UploadFile uploadFile : files) {
+                RequestBody fileBody = uploadFile.requestBody();
+                oneShot |= fileBody.isOneShot();
                 bodyBuilder.addFormDataPart(uploadFile.getName(),
                         uploadFile.getFileName(),
-                        RequestBody.create(null, uploadFile.getFileData())
+                        fileBody
                 );
             }
             for (Map.Entry<String, ?> entry : form.entrySet()) {
                 bodyBuilder.addFormDataPart(entry.getKey(), String.valueOf(entry.getValue()));
             }
-            requestBody = bodyBuilder.build();
+            MultipartBody multipartBody = bodyBuilder.build();
+            requestBody = oneShot ? UploadBodies.oneShot(multipartBody) : multipartBody;
             return this;
         }
 
@@ -326,7 +384,125 @@ public class HttpUtil {
             return this;
         }
 
+        /**
+         * Retries failed attempts of {@code execute()}, {@code executeAsync()} and {@code executeStreaming()}
+         * according to the given policy, instead of the client's default policy.
+         *
+         * @param retryPolicy the retry policy
+         * @return the current RequestBuilder instance
+         */
+        public RequestBuilder retry(RetryPolicy retryPolicy) {
+            this.retryPolicy = Objects.requireNonNull(retryPolicy, "retryPolicy");
+            return this;
+        }
+
+        /**
+         * Hedges GET requests of {@code execute()}, {@code executeAsync()} and {@code executeStreaming()}: if no
+         * response has arrived after the policy's delay, an identical request is sent and the first response wins.
+         * Other methods are not hedged.
+         *
+         * @param hedgePolicy the hedge policy, shared by the requests to one service
+         * @return the current RequestBuilder instance
+         */
+        public RequestBuilder hedge(HedgePolicy hedgePolicy) {
+            this.hedgePolicy = Objects.requireNonNull(hedgePolicy, "hedgePolicy");
+            return this;
+        }
+
+        /**
+         * Sets the request's {@code Cache-Control}, e.g. {@link CacheControl#FORCE_NETWORK} to bypass the client's
+         * {@link HttpCache} or a {@code maxStale} to accept stale responses.
+         *
+         * @param cacheControl the cache directives
+         * @return the current RequestBuilder instance
+         */
+        public RequestBuilder cacheControl(CacheControl cacheControl) {
+            requestBuilder.cacheControl(cacheControl);
+            return this;
+        }
+
+        /**
+         * Limits the rate of this request's host with the given limiter, instead of the client's limiter.
+         * {@code execute()} waits for a permit, {@code executeAsync()} defers the call without holding a thread.
+         *
+         * @param rateLimiter the rate limiter, shared by the requests it limits
+         * @return the current RequestBuilder instance
+         */
+        public RequestBuilder rateLimit(RateLimiter rateLimiter) {
+            return rateLimit(rateLimiter, null);
+        }
+
+        /**
+         * Limits the rate of all requests with the given key, instead of per host.
+         *
+         * @param rateLimiter the rate limiter, shared by the requests it limits
+         * @param key         the name of the limit, or null for the request's host
+         * @return the current RequestBuilder instance
+         */
+        public RequestBuilder rateLimit(RateLimiter rateLimiter, String key) {
+            this.rateLimiter = Objects.requireNonNull(rateLimiter, "rateLimiter");
+            this.rateLimitKey = key;
+            return this;
+        }
+
+        /**
+         * Compresses the request body with the given compression, instead of the client's.
+         *
+         * @param compression the encoding and size threshold
+         * @return the current RequestBuilder instance
+         */
+        public RequestBuilder compress(RequestCompression compression) {
+            this.compression = Objects.requireNonNull(compression, "compression");
+            return this;
+        }
+
+        /**
+         * Coalesces this GET request with identical ones in flight on the same client: {@code execute()} and
+         * {@code executeAsync()} share one call per method, URL and values of the given headers, and every
+         * caller gets its own copy of the buffered response. Other headers are taken from the request that is
+         * actually sent, so list any header that changes the response. Other methods are not coalesced.
+         *
+         * @param headerNames the headers that distinguish otherwise identical requests, e.g. Authorization
+         * @return the current RequestBuilder instance
+         */
+        public RequestBuilder coalesce(String... headerNames) {
+            this.coalesceHeaders = headerNames.clone();
+            return this;
+        }
+
+        /**
+         * Returns the single-flight key of the request, or null if it is not to be coalesced.
+         */
+        private String coalesceKey(Request request) {
+            if (coalesceHeaders == null || httpMethod != HttpMethod.GET) {
+                return null;
+            }
+            StringBuilder key = new StringBuilder(request.method()).append(' ').append(request.url());
+            for (String name : coalesceHeaders) {
+                key.append('\n').append(name).append(':').append(request.headers(name));
+            }
+            return key.toString();
+        }
+
+        private HttpCall newCall(Request request) {
+            if (hedgePolicy != null && hedgePolicy.isHedgeable(request)) {
+                return new HedgedCall(() -> newRetryingCall(request), () -> newRetryingCall(request).asHedge(),
+                        hedgePolicy, profile.getConfig().getAsyncExecutor());
+            }
+            return newRetryingCall(request);
+        }
+
+        private RetryingCall newRetryingCall(Request request) {
+            HttpClientConfig config = profile.getConfig();
+            RetryPolicy policy = retryPolicy != null ? retryPolicy : config.getRetryPolicy();
+            RateLimiter limiter = rateLimiter != null ? rateLimiter : config.getRateLimiter();
+            return new RetryingCall(profile.client(), request, policy != null ? policy : RetryPolicy.NONE,
+                    config.getRetryBudget(), limiter, rateLimitKey != null ? rateLimitKey : request.url().host());
+        }
+
         private Request buildRequest() {
+            // query parameters are accumulated in urlBuilder and only materialized here, once per request
+            requestBuilder.url(urlBuilder.build());
             Request request;
             switch (httpMethod) {
                 case GET:
@@ -344,7 +520,17 @@ public class HttpUtil {
                 default:
                     throw new IllegalArgumentException("http method not support");
             }
-            return request;
+            RequestCompression bodyCompression = compression != null ? compression
+                    : profile.getConfig().getRequestCompression();
+            return bodyCompression == null ? request : bodyCompression.apply(request);
+        }
+
+        /**
+         * Builds the request of a call whose response body is read as a stream rather than buffered, such as a download.
+         */
+        private Request buildStreamingRequest() {
+            requestBuilder.tag(StreamingResponse.Streamed.class, StreamingResponse.Streamed.INSTANCE);
+            return buildRequest();
         }
 
         /**
@@ -355,21 +541,21 @@ public class HttpUtil {
          */
         public Response execute() throws Exception {
             Request request = buildRequest();
-            try (Response response = httpClient.newCall(request).execute()) {
-                if (response.body() == null) {
-                    LOG.error("Response body is null");
-                    throw new IllegalStateException("Response body is null");
-                }
-                ResponseBody newBody = ResponseBody.create(response.body().contentType(), response.body().bytes());
-                return response.newBuilder()
-                        .body(newBody)
-                        .build();
+            String key = coalesceKey(request);
+            try {
+                return key != null ? profile.singleFlight().execute(key, () -> send(request)) : send(request);
             } catch (Exception e) {
                 LOG.error("HTTP Request Execute Failed", e);
                 throw e;
             }
         }
 
+        private Response send(Request request) throws IOException {
+            try (Response response = newCall(request).execute()) {
+                return bufferBody(response);
+            }
+        }
+
         /**
          * Async Executes the HTTP request and returns the response.
          *
@@ -377,9 +563,36 @@ public class HttpUtil {
          * @throws Exception if an error occurs during the request
          */
         public CompletableFuture<Response> executeAsync() {
-            CompletableFuture<Response> future = new CompletableFuture<>();
+            return executeAsync(profile.getConfig().getAsyncExecutor());
+        }
+
+        /**
+         * Async Executes the HTTP request by running a blocking call on the given executor.
+         * <p>
+         * Intended for virtual threads ({@link HttpUtil#virtualThreadExecutor()}), where a blocked call costs no
+         * platform thread. Cancelling the returned future cancels the call.
+         *
+         * @param executor the executor to run the call on, or null to enqueue it on the client's dispatcher
+         * @return CompletableFuture
+         */
+        public CompletableFuture<Response> executeAsync(Executor executor) {
             Request request = buildRequest();
-            httpClient.newCall(request).enqueue(new Callback() {
+            String key = coalesceKey(request);
+            if (key != null) {
+                return profile.singleFlight().executeAsync(key, () -> sendAsync(request, executor));
+            }
+            return sendAsync(request, executor);
+        }
+
+        private CompletableFuture<Response> sendAsync(Request request, Executor executor) {
+            CompletableFuture<Response> future = new CompletableFuture<>();
+            HttpCall call = newCall(request);
+            future.whenComplete((response, e) -> {
+                if (future.isCancelled()) {
+                    call.cancel();
+                }
+            });
+            call.enqueue(new Callback() {
                 @Override
                 public void onFailure(Call call, IOException e) {
                     future.completeExceptionally(e);
@@ -388,16 +601,7 @@ public class HttpUtil {
                 @Override
                 public void onResponse(Call call, Response response) {
                     try {
-                        ResponseBody responseBody = response.body();
-                        if (responseBody == null) {
-                            LOG.error("Response body is null");
-                            throw new IllegalStateException("Response body is null");
-                        }
-                        ResponseBody newBody = ResponseBody.create(responseBody.contentType(), responseBody.bytes());
-                        Response copiedResponse = response.newBuilder()
-                                .body(newBody)
-                                .build();
-                        future.complete(copiedResponse);
+                        future.complete(bufferBody(response));
                     } catch (Exception e) {
                         future.completeExceptionally(new IOException("Response body is null"));
                     } finally {
@@ -405,9 +609,230 @@ public class HttpUtil {
                         response.close();
                     }
                 }
+            }, executor);
+            return future;
+        }
+
+        /**
+         * Executes the HTTP request without buffering the response body.
+         * <p>
+         * The returned handle reads the body straight from the connection and must be closed by the caller.
+         * The response body is not written to the debug log, which would otherwise copy it into memory.
+         *
+         * @return a streaming handle over the live response
+         * @throws IOException if an error occurs during the request
+         */
+        public StreamingResponse executeStreaming() throws IOException {
+            Request request = buildStreamingRequest();
+            try {
+                return new StreamingResponse(newCall(request).execute());
+            } catch (IOException | RuntimeException e) {
+                LOG.error("HTTP Request Execute Failed", e);
+                throw e;
+            }
+        }
+
+        /**
+         * Async Executes the HTTP request without buffering the response body.
+         * <p>
+         * The future completes once the response headers have arrived; the returned handle must be closed by the caller.
+         *
+         * @return CompletableFuture
+         */
+        public CompletableFuture<StreamingResponse> executeStreamingAsync() {
+            CompletableFuture<StreamingResponse> future = new CompletableFuture<>();
+            Request request = buildStreamingRequest();
+            newCall(request).enqueue(new Callback() {
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    future.completeExceptionally(e);
+                }
+
+                @Override
+                public void onResponse(Call call, Response response) {
+                    try {
+                        StreamingResponse streamingResponse = new StreamingResponse(response);
+                        if (!future.complete(streamingResponse)) {
+                            streamingResponse.close();
+                        }
+                    } catch (Exception e) {
+                        future.completeExceptionally(e);
+                    }
+                }
+            });
+            return future;
+        }
+
+        /**
+         * Downloads the response body straight to a file.
+         * <p>
+         * The body is streamed through a fixed-size buffer into a {@link java.nio.channels.FileChannel},
+         * so it is never held in memory as a whole. An existing file at the target path is overwritten.
+         * Like other calls, the download is subject to the retry policy, retry budget and rate limiter; a failure
+         * while the body is being written is not retried.
+         *
+         * @param target the file to write to
+         * @return the number of bytes written
+         * @throws IOException if the request fails, the response is not successful or the file cannot be written
+         */
+        public long downloadTo(Path target) throws IOException {
+            Request request = buildStreamingRequest();
+            try (Response response = newCall(request).execute()) {
+                return FileDownloads.write(response, target);
+            } catch (IOException | RuntimeException e) {
+                LOG.error("HTTP Download Failed", e);
+                throw e;
+            }
+        }
+
+        /**
+         * Async downloads the response body straight to a file.
+         *
+         * @param target the file to write to
+         * @return CompletableFuture holding the number of bytes written
+         * @see #downloadTo(Path)
+         */
+        public CompletableFuture<Long> downloadToAsync(Path target) {
+            CompletableFuture<Long> future = new CompletableFuture<>();
+            Request request = buildStreamingRequest();
+            newCall(request).enqueue(new Callback() {
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    future.completeExceptionally(e);
+                }
+
+                @Override
+                public void onResponse(Call call, Response response) {
+                    try {
+                        future.complete(FileDownloads.write(response, target));
+                    } catch (Exception e) {
+                        future.completeExceptionally(e);
+                    } finally {
+                        response.close();
+                    }
+                }
+            });
+            return future;
+        }
+
+        /**
+         * Downloads the response body to a file over several connections at once.
+         * <p>
+         * A range probe discovers the resource length; large resources are split into byte ranges that are
+         * fetched concurrently and written into their own region of the pre-sized file. Falls back to a
+         * single connection when the server does not support ranges or the resource is small.
+         * Concurrency is further bounded by the client's per-host request limit. If a download split into ranges
+         * fails or is interrupted, the remaining calls are cancelled and the partly written file is deleted.
+         *
+         * @param target      the file to write to
+         * @param connections the maximum number of concurrent connections
+         * @return the number of bytes written
+         * @throws IOException if the request fails, the response is not successful or the file cannot be written
+         */
+        public long downloadTo(Path target, int connections) throws IOException {
+            CompletableFuture<Long> future = downloadToAsync(target, connections);
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                // stops the calls still writing to the target
+                future.cancel(true);
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Download interrupted");
+            } catch (ExecutionException e) {
+                LOG.error("HTTP Download Failed", e.getCause());
+                throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+            }
+        }
+
+        /**
+         * Async downloads the response body to a file over several connections at once.
+         *
+         * @param target      the file to write to
+         * @param connections the maximum number of concurrent connections
+         * @return CompletableFuture holding the number of bytes written
+         * @see #downloadTo(Path, int)
+         */
+        public CompletableFuture<Long> downloadToAsync(Path target, int connections) {
+            if (httpMethod != HttpMethod.GET) {
+                return downloadToAsync(target);
+            }
+            return new RangedDownloader(this::newCall, buildStreamingRequest(), target, connections).start();
+        }
+
+        /**
+         * Downloads the response body to a file, resuming an interrupted earlier attempt if possible.
+         * <p>
+         * The body is written to {@code <target>.part} next to a small checkpoint file. If a previous attempt
+         * for the same URL left a checkpoint, the download continues with {@code Range} and {@code If-Range};
+         * if the resource has changed since, it starts over. The target only appears once the download is complete.
+         *
+         * @param target the file to write to
+         * @return the size of the downloaded file
+         * @throws IOException if the request fails, the response is not successful or the file cannot be written
+         */
+        public long downloadResumable(Path target) throws IOException {
+            Request request = buildStreamingRequest();
+            ResumableDownload download = new ResumableDownload(target, request.url().toString());
+            request = download.prepare(request);
+            try (Response response = newCall(request).execute()) {
+                return download.complete(response);
+            } catch (IOException | RuntimeException e) {
+                LOG.error("HTTP Download Failed", e);
+                throw e;
+            }
+        }
+
+        /**
+         * Async downloads the response body to a file, resuming an interrupted earlier attempt if possible.
+         *
+         * @param target the file to write to
+         * @return CompletableFuture holding the size of the downloaded file
+         * @see #downloadResumable(Path)
+         */
+        public CompletableFuture<Long> downloadResumableAsync(Path target) {
+            CompletableFuture<Long> future = new CompletableFuture<>();
+            Request request = buildStreamingRequest();
+            ResumableDownload download = new ResumableDownload(target, request.url().toString());
+            try {
+                request = download.prepare(request);
+            } catch (IOException e) {
+                future.completeExceptionally(e);
+                return future;
+            }
+            newCall(request).enqueue(new Callback() {
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    future.completeExceptionally(e);
+                }
+
+                @Override
+                public void onResponse(Call call, Response response) {
+                    try {
+                        future.complete(download.complete(response));
+                    } catch (Exception e) {
+                        future.completeExceptionally(e);
+                    } finally {
+                        response.close();
+                    }
+                }
             });
             return future;
         }
+
+        /**
+         * Reads the whole response body into memory so the response stays usable after the connection is released.
+         */
+        private static Response bufferBody(Response response) throws IOException {
+            ResponseBody responseBody = response.body();
+            if (responseBody == null) {
+                LOG.error("Response body is null");
+                throw new IllegalStateException("Response body is null");
+            }
+            ResponseBody newBody = ResponseBody.create(responseBody.contentType(), responseBody.bytes());
+            return response.newBuilder()
+                    .body(newBody)
+                    .build();
+        }
     }
 
     /**
@@ -477,6 +902,10 @@ public class HttpUtil {
 
     /**
      * Represents a file to be uploaded.
+     * <p>
+     * Besides an in-memory {@code fileData} array, the content can be streamed from a {@link Path},
+     * an {@link InputStream} or a replayable {@link Supplier} of streams,
+     * so large uploads do not have to be loaded onto the heap first.
      */
     public static class UploadFile implements Serializable {
         private static final long serialVersionUID = 1L;
@@ -487,6 +916,79 @@ public class HttpUtil {
 
         private byte[] fileData;
 
+        private transient RequestBody source;
+
+        /**
+         * Creates an upload file from an in-memory byte array.
+         *
+         * @param name     the form field name
+         * @param fileName the file name sent to the server
+         * @param fileData the file content
+         * @return the upload file
+         */
+        public static UploadFile of(String name, String fileName, byte[] fileData) {
+            UploadFile uploadFile = named(name, fileName);
+            uploadFile.setFileData(fileData);
+            return uploadFile;
+        }
+
+        /**
+         * Creates an upload file that streams its content from disk while the request is written.
+         *
+         * @param name     the form field name
+         * @param fileName the file name sent to the server
+         * @param path     the file to upload
+         * @return the upload file
+         */
+        public static UploadFile of(String name, String fileName, Path path) {
+            UploadFile uploadFile = named(name, fileName);
+            uploadFile.source = UploadBodies.path(null, path);
+            return uploadFile;
+        }
+
+        /**
+         * Creates an upload file that streams its content from an {@link InputStream}.
+         * The stream is consumed once and closed, so the request cannot be retried.
+         *
+         * @param name          the form field name
+         * @param fileName      the file name sent to the server
+         * @param inputStream   the content to upload
+         * @param contentLength the number of bytes in the stream, or -1 if unknown (the request is then sent chunked)
+         * @return the upload file
+         */
+        public static UploadFile of(String name, String fileName, InputStream inputStream, long contentLength) {
+            UploadFile uploadFile = named(name, fileName);
+            uploadFile.source = UploadBodies.stream(null, inputStream, contentLength);
+            return uploadFile;
+        }
+
+        /**
+         * Creates an upload file that opens a fresh {@link InputStream} each time the request is written,
+         * so the request can be replayed on retries.
+         *
+         * @param name          the form field name
+         * @param fileName      the file name sent to the server
+         * @param supplier      supplies the content to upload, once per attempt
+         * @param contentLength the number of bytes in each stream, or -1 if unknown (the request is then sent chunked)
+         * @return the upload file
+         */
+        public static UploadFile of(String name, String fileName, Supplier<? extends InputStream> supplier, long contentLength) {
+            UploadFile uploadFile = named(name, fileName);
+            uploadFile.source = UploadBodies.supplier(null, supplier, contentLength);
+            return uploadFile;
+        }
+
+        private static UploadFile named(String name, String fileName) {
+            UploadFile uploadFile = new UploadFile();
+            uploadFile.setName(name);
+            uploadFile.setFileName(fileName);
+            return uploadFile;
+        }
+
+        private RequestBody requestBody() {
+            return source != null ? source : RequestBody.create(null, fileData);
+        }
+
         public String getName() {
             return name;
         }
@@ -509,13 +1011,14 @@ public class HttpUtil {
 
         public void setFileData(byte[] fileData) {
             this.fileData = fileData;
+            this.source = null;
         }
     }
 
     /**
      * Enum representing the HTTP methods supported by this utility.
      */
-    private enum HttpMethod {
+    enum HttpMethod {
         GET, POST, PUT, DELETE
     }
 }
@@ -0,0 +1,270 @@
+package com.xmzhou.util;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Downloads a resource over several connections at once.
+ * <p>
+ * A {@code Range: bytes=0-0} probe discovers the total length and whether the server honours ranges.
+ * The file is then pre-sized and split into byte ranges that are fetched concurrently, each through the
+ * request's retry policy and rate limiter, and written into its own region of the file with positional writes.
+ * When the server ignores the probe range, the probe response itself is streamed as a single-connection download.
+ * If the returned future fails or is cancelled, the running calls are cancelled, and a pre-sized file is deleted.
+ */
+final class RangedDownloader {
+    private static final Logger LOG = LoggerFactory.getLogger(HttpUtil.class);
+
+    /**
+     * Resources are not split into segments smaller than this.
+     */
+    static final long MIN_SEGMENT_SIZE = 1024 * 1024;
+
+    private final Function<Request, HttpCall> calls;
+    private final Request request;
+    private final Path target;
+    private final int connections;
+    private final CompletableFuture<Long> result = new CompletableFuture<>();
+    private final List<HttpCall> running = new ArrayList<>();
+    private RandomAccessFile segmentFile;
+
+    RangedDownloader(Function<Request, HttpCall> calls, Request request, Path target, int connections) {
+        if (connections < 1) {
+            throw new IllegalArgumentException("connections must be at least 1");
+        }
+        this.calls = calls;
+        this.request = request;
+        this.target = target;
+        this.connections = connections;
+    }
+
+    /**
+     * Starts the download.
+     *
+     * @return a future holding the number of bytes written
+     */
+    CompletableFuture<Long> start() {
+        Request probe = request.newBuilder()
+                .header("Range", "bytes=0-0")
+                .build();
+        // the caller may cancel the future
+        result.whenComplete((bytes, e) -> {
+            if (e != null) {
+                cleanUp();
+            }
+        });
+        newCall(probe).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                fail(e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try {
+                    onProbe(response);
+                } catch (Exception e) {
+                    fail(e);
+                } finally {
+                    response.close();
+                }
+            }
+        });
+        return result;
+    }
+
+    private void onProbe(Response probe) throws IOException {
+        if (probe.code() == 416) {
+            // an empty resource cannot satisfy any range
+            downloadSingle();
+            return;
+        }
+        if (probe.code() != 206) {
+            // the server ignored the range and is sending the whole body: keep it as a single stream
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Range not supported by {}, downloading over a single connection", request.url());
+            }
+            result.complete(FileDownloads.write(probe, target));
+            return;
+        }
+        long total = FileDownloads.totalLength(probe);
+        int segments = (int) Math.min(connections, Math.max(1, total / MIN_SEGMENT_SIZE));
+        if (total < 0 || segments == 1 || "none".equalsIgnoreCase(probe.header("Accept-Ranges"))) {
+            probe.close();
+            downloadSingle();
+            return;
+        }
+        downloadSegments(total, segments, FileDownloads.validator(probe));
+    }
+
+    private void downloadSingle() {
+        newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                fail(e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try {
+                    result.complete(FileDownloads.write(response, target));
+                } catch (Exception e) {
+                    fail(e);
+                } finally {
+                    response.close();
+                }
+            }
+        });
+    }
+
+    private void downloadSegments(long total, int segments, String validator) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(target.toFile(), "rw");
+        FileChannel channel;
+        try {
+            file.setLength(total);
+            channel = file.getChannel();
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Downloading {} bytes from {} in {} segments", total, request.url(), segments);
+        }
+        AtomicInteger remaining = new AtomicInteger(segments);
+        synchronized (running) {
+            segmentFile = file;
+        }
+        if (result.isCompletedExceptionally()) {
+            cleanUp();
+            return;
+        }
+        long segmentSize = total / segments;
+        for (int i = 0; i < segments; i++) {
+            long start = i * segmentSize;
+            long end = i == segments - 1 ? total - 1 : start + segmentSize - 1;
+            Request.Builder builder = request.newBuilder()
+                    .header("Range", "bytes=" + start + "-" + end);
+            if (validator != null) {
+                builder.header("If-Range", validator);
+            }
+            newCall(builder.build()).enqueue(new Callback() {
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    fail(e);
+                }
+
+                @Override
+                public void onResponse(Call call, Response response) {
+                    try {
+                        writeSegment(response, channel, start, end);
+                        if (remaining.decrementAndGet() == 0) {
+                            closeQuietly(takeSegmentFile());
+                            result.complete(total);
+                        }
+                    } catch (Exception e) {
+                        fail(e);
+                    } finally {
+                        response.close();
+                    }
+                }
+            });
+        }
+    }
+
+    private void writeSegment(Response response, FileChannel channel, long start, long end) throws IOException {
+        ResponseBody body = FileDownloads.successfulBody(response);
+        if (response.code() != 206 || FileDownloads.rangeStart(response) != start) {
+            throw new IOException("Server did not honour range " + start + "-" + end + " for " + request.url());
+        }
+        long written = FileDownloads.transfer(body.source(), channel, start);
+        if (written != end - start + 1) {
+            throw new IOException("Segment " + start + "-" + end + " ended after " + written + " bytes");
+        }
+    }
+
+    /**
+     * Creates a call that is cancelled with the download, including when the download has already failed.
+     */
+    private HttpCall newCall(Request request) {
+        HttpCall call = calls.apply(request);
+        synchronized (running) {
+            running.add(call);
+        }
+        if (result.isCompletedExceptionally()) {
+            call.cancel();
+        }
+        return call;
+    }
+
+    /**
+     * Fails the download. The calls are cancelled and the partial file removed first, so that neither outlives
+     * the future.
+     */
+    private void fail(Throwable e) {
+        if (!result.isDone()) {
+            cleanUp();
+        }
+        result.completeExceptionally(e);
+    }
+
+    private void cleanUp() {
+        cancelCalls();
+        RandomAccessFile file = takeSegmentFile();
+        if (file != null) {
+            closeQuietly(file);
+            // a partly written file is of no use: its missing ranges are indistinguishable from zeros
+            deleteQuietly(target);
+        }
+    }
+
+    private RandomAccessFile takeSegmentFile() {
+        synchronized (running) {
+            RandomAccessFile file = segmentFile;
+            segmentFile = null;
+            return file;
+        }
+    }
+
+    private void cancelCalls() {
+        synchronized (running) {
+            for (HttpCall call : running) {
+                call.cancel();
+            }
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            LOG.warn("Failed to delete incomplete download {}", path, e);
+        }
+    }
+
+    private static void closeQuietly(RandomAccessFile file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            file.close();
+        } catch (IOException e) {
+            LOG.warn("Failed to close {}", file, e);
+        }
+    }
+}
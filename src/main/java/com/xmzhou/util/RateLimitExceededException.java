@@ -0,0 +1,37 @@
+package com.xmzhou.util;
+
+import java.io.IOException;
+
+/**
+ * Thrown instead of sending a request when a {@link RateLimiter} would make it wait longer than its maximum wait.
+ */
+public class RateLimitExceededException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final String key;
+    private final long waitMillis;
+
+    RateLimitExceededException(String key, long waitMillis) {
+        super("Rate limit for " + key + " exceeded, a permit is available in " + waitMillis + " ms");
+        this.key = key;
+        this.waitMillis = waitMillis;
+    }
+
+    /**
+     * Returns the key of the exceeded limit, i.e. the host or the name given to the request.
+     *
+     * @return the limiter key
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Returns how long the request would have had to wait.
+     *
+     * @return the wait in milliseconds
+     */
+    public long getWaitMillis() {
+        return waitMillis;
+    }
+}
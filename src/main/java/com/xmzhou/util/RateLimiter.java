@@ -0,0 +1,182 @@
+package com.xmzhou.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <h3> Client-side rate limiter.</h3>
+ *
+ * <p>
+ * Implements the generic cell rate algorithm (GCRA): each key keeps only a theoretical arrival time, advanced by
+ * {@code 1 / permitsPerSecond} per request with a compare-and-set, so the limiter takes no locks. Up to
+ * {@code burst} requests pass at once; further requests reserve the next free slot and wait for it.
+ * {@code execute()} sleeps until then, while {@code executeAsync()} schedules the call on a timer without holding
+ * a thread. A request that would wait longer than {@code maxWaitMillis} fails with a
+ * {@link RateLimitExceededException} and does not consume a slot.
+ * </p>
+ * <p>
+ * Limits are kept per host, or per the key given to {@link HttpUtil.RequestBuilder#rateLimit(RateLimiter, String)}.
+ * </p>
+ *
+ * <pre>
+ *  Usage:
+ * <code>RateLimiter limiter = RateLimiter.builder().permitsPerSecond(20).burst(5).build();
+ *  HttpUtil.get(url)
+ *          .rateLimit(limiter)
+ *          .execute();</code>
+ * </pre>
+ */
+public class RateLimiter {
+    private double permitsPerSecond = 10;
+    private int burst = 1;
+    private long maxWaitMillis = Long.MAX_VALUE;
+
+    private long intervalNanos;
+    private long toleranceNanos;
+    private final ConcurrentMap<String, AtomicLong> arrivals = new ConcurrentHashMap<>();
+    private final LongAdder delayedRequests = new LongAdder();
+    private final LongAdder rejectedRequests = new LongAdder();
+
+    public double getPermitsPerSecond() {
+        return permitsPerSecond;
+    }
+
+    public int getBurst() {
+        return burst;
+    }
+
+    public long getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    /**
+     * Returns the number of requests that had to wait for a permit.
+     *
+     * @return the delayed request count
+     */
+    public long getDelayedRequests() {
+        return delayedRequests.sum();
+    }
+
+    /**
+     * Returns the number of requests rejected because they would have waited longer than the maximum wait.
+     *
+     * @return the rejected request count
+     */
+    public long getRejectedRequests() {
+        return rejectedRequests.sum();
+    }
+
+    /**
+     * Takes a permit for the given key if one is available right now, without waiting.
+     *
+     * @param key the host or name of the limit
+     * @return whether a permit was taken
+     */
+    public boolean tryAcquire(String key) {
+        return reserve(key, 0) == 0;
+    }
+
+    /**
+     * Reserves the next permit for the given key.
+     *
+     * @return the nanoseconds to wait before using the permit, or -1 if that exceeds {@code maxWaitNanos}
+     */
+    long reserve(String key, long maxWaitNanos) {
+        AtomicLong arrival = arrivals.get(key);
+        if (arrival == null) {
+            arrival = arrivals.computeIfAbsent(key, k -> new AtomicLong(System.nanoTime()));
+        }
+        while (true) {
+            long now = System.nanoTime();
+            long current = arrival.get();
+            long theoretical = current - now > 0 ? current : now;
+            long wait = theoretical - toleranceNanos - now;
+            if (wait > maxWaitNanos) {
+                return -1;
+            }
+            if (arrival.compareAndSet(current, theoretical + intervalNanos)) {
+                return Math.max(0, wait);
+            }
+        }
+    }
+
+    /**
+     * Reserves the next permit for the given key, counting delays and rejections.
+     *
+     * @return the nanoseconds to wait before using the permit
+     * @throws RateLimitExceededException if the wait exceeds the maximum wait
+     */
+    long acquire(String key) throws RateLimitExceededException {
+        long maxWaitNanos = maxWaitMillis == Long.MAX_VALUE ? Long.MAX_VALUE : TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        long wait = reserve(key, maxWaitNanos);
+        if (wait < 0) {
+            rejectedRequests.increment();
+            throw new RateLimitExceededException(key, TimeUnit.NANOSECONDS.toMillis(waitEstimate(key)));
+        }
+        if (wait > 0) {
+            delayedRequests.increment();
+        }
+        return wait;
+    }
+
+    private long waitEstimate(String key) {
+        return Math.max(0, arrivals.get(key).get() - toleranceNanos - System.nanoTime());
+    }
+
+    @Override
+    public String toString() {
+        return "RateLimiter{permitsPerSecond=" + permitsPerSecond
+                + ", burst=" + burst
+                + ", delayedRequests=" + getDelayedRequests()
+                + ", rejectedRequests=" + getRejectedRequests() + '}';
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private final RateLimiter limiter;
+
+        public Builder() {
+            limiter = new RateLimiter();
+        }
+
+        /**
+         * Sets the sustained rate per key.
+         */
+        public Builder permitsPerSecond(double permitsPerSecond) {
+            limiter.permitsPerSecond = permitsPerSecond;
+            return this;
+        }
+
+        /**
+         * Sets how many requests may pass at once after an idle period.
+         */
+        public Builder burst(int burst) {
+            limiter.burst = burst;
+            return this;
+        }
+
+        /**
+         * Sets the longest a request may wait for a permit before it is rejected.
+         */
+        public Builder maxWaitMillis(long maxWaitMillis) {
+            limiter.maxWaitMillis = maxWaitMillis;
+            return this;
+        }
+
+        public RateLimiter build() {
+            if (!(limiter.permitsPerSecond > 0) || limiter.burst < 1 || limiter.maxWaitMillis < 0) {
+                throw new IllegalArgumentException("invalid rate limit settings");
+            }
+            limiter.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / limiter.permitsPerSecond));
+            limiter.toleranceNanos = limiter.intervalNanos * (limiter.burst - 1);
+            return limiter;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.xmzhou.util;
+
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.DeflaterSink;
+import okio.GzipSink;
+import okio.Okio;
+import okio.Sink;
+
+import java.io.IOException;
+import java.util.Objects;
+import java.util.zip.Deflater;
+
+/**
+ * <h3> Request body compression.</h3>
+ *
+ * <p>
+ * Compresses request bodies of at least {@code minBytes}, and bodies of unknown length, with gzip or deflate and
+ * sets {@code Content-Encoding}. The body is compressed while it is written to the connection, so the
+ * compressed form is never held in memory; as its length is not known in advance, it is sent chunked. Requests
+ * that already carry a {@code Content-Encoding} are sent as they are. The server must accept the encoding.
+ * </p>
+ *
+ * <pre>
+ *  Usage:
+ * <code>HttpUtil.put(url)
+ *          .body(json)
+ *          .compress(RequestCompression.builder().encoding(RequestCompression.Encoding.GZIP).build())
+ *          .execute();</code>
+ * </pre>
+ */
+public class RequestCompression {
+    /**
+     * Supported content codings.
+     */
+    public enum Encoding {
+        GZIP("gzip"),
+        /**
+         * The zlib format (RFC 1950), which is what HTTP calls deflate.
+         */
+        DEFLATE("deflate");
+
+        private final String headerValue;
+
+        Encoding(String headerValue) {
+            this.headerValue = headerValue;
+        }
+
+        public String headerValue() {
+            return headerValue;
+        }
+    }
+
+    private Encoding encoding = Encoding.GZIP;
+    private long minBytes = 1024;
+
+    public Encoding getEncoding() {
+        return encoding;
+    }
+
+    public long getMinBytes() {
+        return minBytes;
+    }
+
+    /**
+     * Returns the request with a compressed body, or the request itself if it is not to be compressed.
+     */
+    Request apply(Request request) {
+        RequestBody body = request.body();
+        if (body == null || request.header("Content-Encoding") != null) {
+            return request;
+        }
+        long contentLength;
+        try {
+            contentLength = body.contentLength();
+        } catch (IOException e) {
+            contentLength = -1;
+        }
+        if (contentLength != -1 && contentLength < minBytes) {
+            return request;
+        }
+        return request.newBuilder()
+                .header("Content-Encoding", encoding.headerValue())
+                .method(request.method(), compressed(body))
+                .build();
+    }
+
+    private RequestBody compressed(RequestBody body) {
+        return new RequestBody() {
+            @Override
+            public MediaType contentType() {
+                return body.contentType();
+            }
+
+            @Override
+            public long contentLength() {
+                return -1;
+            }
+
+            @Override
+            public boolean isOneShot() {
+                return body.isOneShot();
+            }
+
+            @Override
+            public void writeTo(BufferedSink sink) throws IOException {
+                Sink compressor = encoding == Encoding.GZIP ? new GzipSink(sink) : new DeflaterSink(sink, new Deflater());
+                BufferedSink compressedSink = Okio.buffer(compressor);
+                body.writeTo(compressedSink);
+                // closing writes the trailer; closing the connection's sink again afterwards is harmless
+                compressedSink.close();
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "RequestCompression{encoding=" + encoding.headerValue() + ", minBytes=" + minBytes + '}';
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private final RequestCompression compression;
+
+        public Builder() {
+            compression = new RequestCompression();
+        }
+
+        /**
+         * Sets the content coding, gzip by default.
+         */
+        public Builder encoding(Encoding encoding) {
+            compression.encoding = Objects.requireNonNull(encoding, "encoding");
+            return this;
+        }
+
+        /**
+         * Sets the smallest body that is compressed; smaller bodies are not worth the CPU.
+         */
+        public Builder minBytes(long minBytes) {
+            compression.minBytes = minBytes;
+            return this;
+        }
+
+        public RequestCompression build() {
+            if (compression.minBytes < 0) {
+                throw new IllegalArgumentException("minBytes must not be negative");
+            }
+            return compression;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.xmzhou.util;
+
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
+
+/**
+ * A download that survives interruptions.
+ * <p>
+ * The body is written to {@code <target>.part}, and a small checkpoint holding the URL, the validator
+ * (ETag or Last-Modified) and the number of bytes durably written is kept in {@code <target>.part.checkpoint}.
+ * The next attempt sends {@code Range} together with {@code If-Range}, so it continues where the previous one
+ * stopped if the resource is unchanged and starts over otherwise. Once complete, the partial file is moved to
+ * the target and the checkpoint is removed.
+ */
+final class ResumableDownload {
+    private static final Logger LOG = LoggerFactory.getLogger(HttpUtil.class);
+
+    /**
+     * Bytes written between two checkpoints.
+     */
+    static final long CHECKPOINT_INTERVAL = 4 * 1024 * 1024;
+
+    private final Path target;
+    private final Path partial;
+    private final Path checkpointFile;
+    private final String url;
+    private String validator;
+    private long offset;
+
+    ResumableDownload(Path target, String url) {
+        this.target = target;
+        this.partial = target.resolveSibling(target.getFileName() + ".part");
+        this.checkpointFile = target.resolveSibling(target.getFileName() + ".part.checkpoint");
+        this.url = url;
+    }
+
+    /**
+     * Reads the checkpoint left by a previous attempt and turns the request into a ranged one if it can be resumed.
+     *
+     * @param request the original request
+     * @return the request to send
+     * @throws IOException if the checkpoint cannot be read
+     */
+    Request prepare(Request request) throws IOException {
+        // byte offsets must refer to the identity representation on every attempt
+        request = request.newBuilder()
+                .header("Accept-Encoding", "identity")
+                .build();
+        offset = 0;
+        validator = null;
+        if (Files.exists(checkpointFile) && Files.exists(partial)) {
+            Properties checkpoint = new Properties();
+            try (InputStream in = Files.newInputStream(checkpointFile)) {
+                checkpoint.load(in);
+            }
+            String validator = checkpoint.getProperty("validator");
+            if (url.equals(checkpoint.getProperty("url")) && validator != null) {
+                this.validator = validator;
+                this.offset = Math.min(Long.parseLong(checkpoint.getProperty("bytesCompleted", "0")), Files.size(partial));
+            }
+        }
+        if (offset == 0) {
+            return request;
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Resuming download of {} at byte {}", url, offset);
+        }
+        return request.newBuilder()
+                .header("Range", "bytes=" + offset + "-")
+                .header("If-Range", validator)
+                .build();
+    }
+
+    /**
+     * Writes the response of a prepared request and moves the finished file into place.
+     *
+     * @param response the response to the prepared request
+     * @return the total size of the downloaded file
+     * @throws IOException if the response is not usable or writing fails; the checkpoint is kept for the next attempt
+     */
+    long complete(Response response) throws IOException {
+        if (response.code() == 416 && offset > 0 && FileDownloads.unsatisfiedLength(response) == offset) {
+            // the previous attempt wrote everything but did not get to move the file
+            return finish();
+        }
+        ResponseBody body = FileDownloads.successfulBody(response);
+        if (response.code() != 206 || offset == 0) {
+            offset = 0;
+            validator = FileDownloads.validator(response);
+        } else if (FileDownloads.rangeStart(response) != offset) {
+            throw new IOException("Server did not resume " + url + " at byte " + offset);
+        }
+        long expected = body.contentLength() < 0 ? -1 : offset + body.contentLength();
+        long completed = offset;
+        try (FileChannel channel = FileChannel.open(partial, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            channel.truncate(offset);
+            BufferedSource source = body.source();
+            ByteBuffer buffer = ByteBuffer.allocateDirect(FileDownloads.BUFFER_SIZE);
+            long lastCheckpoint = completed;
+            try {
+                while (source.read(buffer) != -1) {
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        completed += channel.write(buffer, completed);
+                    }
+                    buffer.clear();
+                    if (completed - lastCheckpoint >= CHECKPOINT_INTERVAL) {
+                        channel.force(false);
+                        saveCheckpoint(completed);
+                        lastCheckpoint = completed;
+                    }
+                }
+            } catch (IOException e) {
+                try {
+                    channel.force(false);
+                    saveCheckpoint(completed);
+                } catch (IOException checkpointFailure) {
+                    e.addSuppressed(checkpointFailure);
+                }
+                throw e;
+            }
+        }
+        if (expected >= 0 && completed != expected) {
+            saveCheckpoint(completed);
+            throw new IOException("Download of " + url + " ended after " + completed + " of " + expected + " bytes");
+        }
+        return finish();
+    }
+
+    private long finish() throws IOException {
+        try {
+            Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        Files.deleteIfExists(checkpointFile);
+        return Files.size(target);
+    }
+
+    private void saveCheckpoint(long bytesCompleted) throws IOException {
+        if (validator == null) {
+            // without a validator a resumed range could belong to a different version of the resource
+            return;
+        }
+        Properties checkpoint = new Properties();
+        checkpoint.setProperty("url", url);
+        checkpoint.setProperty("validator", validator);
+        checkpoint.setProperty("bytesCompleted", String.valueOf(bytesCompleted));
+        Path tmp = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            checkpoint.store(out, null);
+        }
+        try {
+            Files.move(tmp, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, checkpointFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
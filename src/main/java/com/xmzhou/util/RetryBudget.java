@@ -0,0 +1,173 @@
+package com.xmzhou.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <h3> Token-bucket budget that caps retries at a fraction of requests.</h3>
+ *
+ * <p>
+ * Every request deposits {@code ratio} of a token into its host's bucket, up to {@code maxRetries} tokens, and
+ * every retry withdraws one. When a bucket is empty, failures are returned to the caller instead of retried, so
+ * during an outage retries add at most {@code ratio} extra load rather than multiplying it by the attempt count.
+ * Buckets start full, which lets low-traffic clients retry occasional failures.
+ * </p>
+ * <p>
+ * A budget is shared by every request on the clients configured with it. By default each host has its own
+ * bucket; {@link Builder#perHost(boolean)} switches to one bucket for the whole client.
+ * </p>
+ */
+public class RetryBudget {
+    /**
+     * Tokens are stored in thousandths so that fractional deposits fit in an AtomicLong.
+     */
+    private static final long SCALE = 1000;
+    private static final String ALL_HOSTS = "";
+
+    private double ratio = 0.1;
+    private int maxRetries = 10;
+    private boolean perHost = true;
+
+    private final ConcurrentMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder rejectedRetries = new LongAdder();
+
+    public double getRatio() {
+        return ratio;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public boolean isPerHost() {
+        return perHost;
+    }
+
+    /**
+     * Returns the number of requests that deposited into this budget.
+     *
+     * @return the request count
+     */
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    /**
+     * Returns the number of retries the budget allowed.
+     *
+     * @return the retry count
+     */
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    /**
+     * Returns the number of retries refused because the budget was exhausted.
+     *
+     * @return the rejected retry count
+     */
+    public long getRejectedRetries() {
+        return rejectedRetries.sum();
+    }
+
+    /**
+     * Returns how many retries are currently available for the given host.
+     *
+     * @param host the host name
+     * @return the available retries, possibly fractional
+     */
+    public double availableRetries(String host) {
+        return (double) bucket(host).get() / SCALE;
+    }
+
+    void onRequest(String host) {
+        requests.increment();
+        long deposit = (long) (ratio * SCALE);
+        long max = maxRetries * SCALE;
+        AtomicLong bucket = bucket(host);
+        long tokens;
+        do {
+            tokens = bucket.get();
+            if (tokens >= max) {
+                return;
+            }
+        } while (!bucket.compareAndSet(tokens, Math.min(max, tokens + deposit)));
+    }
+
+    boolean tryRetry(String host) {
+        AtomicLong bucket = bucket(host);
+        long tokens;
+        do {
+            tokens = bucket.get();
+            if (tokens < SCALE) {
+                rejectedRetries.increment();
+                return false;
+            }
+        } while (!bucket.compareAndSet(tokens, tokens - SCALE));
+        retries.increment();
+        return true;
+    }
+
+    private AtomicLong bucket(String host) {
+        return buckets.computeIfAbsent(perHost ? host : ALL_HOSTS, key -> new AtomicLong(maxRetries * SCALE));
+    }
+
+    @Override
+    public String toString() {
+        return "RetryBudget{ratio=" + ratio
+                + ", maxRetries=" + maxRetries
+                + ", requests=" + getRequests()
+                + ", retries=" + getRetries()
+                + ", rejectedRetries=" + getRejectedRetries() + '}';
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private final RetryBudget budget;
+
+        public Builder() {
+            budget = new RetryBudget();
+        }
+
+        /**
+         * Sets the fraction of a retry each request earns, e.g. 0.1 for at most one retry per ten requests.
+         */
+        public Builder ratio(double ratio) {
+            budget.ratio = ratio;
+            return this;
+        }
+
+        /**
+         * Sets the bucket capacity, i.e. the largest burst of retries.
+         */
+        public Builder maxRetries(int maxRetries) {
+            budget.maxRetries = maxRetries;
+            return this;
+        }
+
+        /**
+         * Sets whether each host has its own bucket.
+         */
+        public Builder perHost(boolean perHost) {
+            budget.perHost = perHost;
+            return this;
+        }
+
+        public RetryBudget build() {
+            if (budget.ratio < 0 || budget.ratio > 1) {
+                throw new IllegalArgumentException("ratio must be between 0 and 1");
+            }
+            if (budget.maxRetries < 0) {
+                throw new IllegalArgumentException("maxRetries must not be negative");
+            }
+            return budget;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.xmzhou.util;
+
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <h3> Retry policy for a request.</h3>
+ *
+ * <p>
+ * Failed attempts are retried after an exponential backoff with full jitter: the n-th retry waits a random
+ * time between 0 and {@code min(maxBackoffMillis, initialBackoffMillis * 2^(n-1))}. A {@code Retry-After}
+ * header on a retryable response replaces the backoff; if it asks for longer than {@code maxRetryAfterMillis},
+ * the response is returned instead of waiting.
+ * </p>
+ * <p>
+ * Only I/O failures and the configured status codes (429 and 503 by default) are retried, and only for
+ * idempotent methods (GET, PUT, DELETE) unless {@link Builder#retryNonIdempotent(boolean)} is set.
+ * Requests with a one-shot body, such as an {@link java.io.InputStream} upload, are never retried, and neither
+ * are calls rejected by an open {@link CircuitBreaker}, a {@link RateLimiter} or an {@link AdaptiveConcurrencyLimiter}.
+ * </p>
+ *
+ * <pre>
+ *  Usage:
+ * <code>HttpUtil.get(url)
+ *          .retry(RetryPolicy.builder().maxAttempts(4).build())
+ *          .execute();</code>
+ * </pre>
+ */
+public class RetryPolicy {
+    /**
+     * A single attempt.
+     */
+    static final RetryPolicy NONE = builder().maxAttempts(1).build();
+
+    private static final Set<String> IDEMPOTENT_METHODS =
+            new HashSet<>(Arrays.asList("GET", "HEAD", "PUT", "DELETE", "OPTIONS", "TRACE"));
+
+    private int maxAttempts = 3;
+    private long initialBackoffMillis = 100;
+    private long maxBackoffMillis = 5_000;
+    private long maxRetryAfterMillis = 30_000;
+    private boolean respectRetryAfter = true;
+    private boolean retryNonIdempotent;
+    private Set<Integer> retryableStatuses = new HashSet<>(Arrays.asList(429, 503));
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public long getInitialBackoffMillis() {
+        return initialBackoffMillis;
+    }
+
+    public long getMaxBackoffMillis() {
+        return maxBackoffMillis;
+    }
+
+    public long getMaxRetryAfterMillis() {
+        return maxRetryAfterMillis;
+    }
+
+    public boolean isRespectRetryAfter() {
+        return respectRetryAfter;
+    }
+
+    public boolean isRetryNonIdempotent() {
+        return retryNonIdempotent;
+    }
+
+    public Set<Integer> getRetryableStatuses() {
+        return Collections.unmodifiableSet(retryableStatuses);
+    }
+
+    /**
+     * Returns how long to wait before retrying after the given response, or -1 to return it to the caller.
+     */
+    long retryDelay(Request request, int attempt, Response response) {
+        if (attempt >= maxAttempts || !retryableStatuses.contains(response.code()) || !isRetryable(request)) {
+            return -1;
+        }
+        if (respectRetryAfter) {
+            long retryAfter = retryAfterMillis(response);
+            if (retryAfter > maxRetryAfterMillis) {
+                return -1;
+            }
+            if (retryAfter >= 0) {
+                return retryAfter;
+            }
+        }
+        return backoff(attempt);
+    }
+
+    /**
+     * Returns how long to wait before retrying after the given failure, or -1 to propagate it.
+     */
+    long retryDelay(Request request, int attempt, IOException failure) {
+        if (attempt >= maxAttempts || failure instanceof CircuitBreakerOpenException
+                || failure instanceof RateLimitExceededException || failure instanceof ConcurrencyLimitExceededException
+                || !isRetryable(request)) {
+            return -1;
+        }
+        return backoff(attempt);
+    }
+
+    boolean isRetryable(Request request) {
+        RequestBody body = request.body();
+        if (body != null && body.isOneShot()) {
+            return false;
+        }
+        return retryNonIdempotent || IDEMPOTENT_METHODS.contains(request.method());
+    }
+
+    private long backoff(int attempt) {
+        long ceiling = attempt > 31 ? maxBackoffMillis : Math.min(maxBackoffMillis, initialBackoffMillis << (attempt - 1));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    /**
+     * Parses {@code Retry-After} as delay-seconds or an HTTP date, returning -1 if it is absent or malformed.
+     */
+    private static long retryAfterMillis(Response response) {
+        String value = response.header("Retry-After");
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Math.max(0, TimeUnit.SECONDS.toMillis(Long.parseLong(value.trim())));
+        } catch (NumberFormatException e) {
+            Date date = response.headers().getDate("Retry-After");
+            return date == null ? -1 : Math.max(0, date.getTime() - System.currentTimeMillis());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RetryPolicy{maxAttempts=" + maxAttempts
+                + ", initialBackoffMillis=" + initialBackoffMillis
+                + ", maxBackoffMillis=" + maxBackoffMillis
+                + ", retryableStatuses=" + retryableStatuses + '}';
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private final RetryPolicy policy;
+
+        public Builder() {
+            policy = new RetryPolicy();
+        }
+
+        /**
+         * Sets the total number of attempts, including the first one.
+         */
+        public Builder maxAttempts(int maxAttempts) {
+            policy.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        /**
+         * Sets the backoff ceiling of the first retry; it doubles with every further retry.
+         */
+        public Builder initialBackoffMillis(long initialBackoffMillis) {
+            policy.initialBackoffMillis = initialBackoffMillis;
+            return this;
+        }
+
+        /**
+         * Sets the upper bound of the backoff ceiling.
+         */
+        public Builder maxBackoffMillis(long maxBackoffMillis) {
+            policy.maxBackoffMillis = maxBackoffMillis;
+            return this;
+        }
+
+        /**
+         * Sets the longest {@code Retry-After} that is waited for; longer ones end the retries.
+         */
+        public Builder maxRetryAfterMillis(long maxRetryAfterMillis) {
+            policy.maxRetryAfterMillis = maxRetryAfterMillis;
+            return this;
+        }
+
+        /**
+         * Sets whether a {@code Retry-After} header replaces the computed backoff.
+         */
+        public Builder respectRetryAfter(boolean respectRetryAfter) {
+            policy.respectRetryAfter = respectRetryAfter;
+            return this;
+        }
+
+        /**
+         * Allows retrying non-idempotent methods such as POST.
+         */
+        public Builder retryNonIdempotent(boolean retryNonIdempotent) {
+            policy.retryNonIdempotent = retryNonIdempotent;
+            return this;
+        }
+
+        /**
+         * Replaces the status codes that are retried.
+         */
+        public Builder retryableStatuses(Integer... statuses) {
+            policy.retryableStatuses = new HashSet<>(Arrays.asList(statuses));
+            return this;
+        }
+
+        public RetryPolicy build() {
+            if (policy.maxAttempts < 1) {
+                throw new IllegalArgumentException("maxAttempts must be at least 1");
+            }
+            if (policy.initialBackoffMillis < 0 || policy.maxBackoffMillis < policy.initialBackoffMillis
+                    || policy.maxRetryAfterMillis < 0) {
+                throw new IllegalArgumentException("invalid backoff settings");
+            }
+            return policy;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.xmzhou.util;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A call that is re-issued according to a {@link RetryPolicy}.
+ * <p>
+ * Synchronous execution sleeps between attempts on the caller's thread. Asynchronous execution waits on
+ * the {@link SharedScheduler} timer, so no thread is held during the backoff. Responses that are retried
+ * are closed; only the final response or failure reaches the caller.
+ * <p>
+ * Each call deposits into the client's {@link RetryBudget}, if any, unless it is a hedge, and each retry must
+ * withdraw from it.
+ * With a {@link RateLimiter}, every attempt first waits for a permit, again sleeping when synchronous and on
+ * the timer when asynchronous.
+ */
+final class RetryingCall implements HttpCall {
+    private static final Logger LOG = LoggerFactory.getLogger(HttpUtil.class);
+
+    private final OkHttpClient client;
+    private final Request request;
+    private final RetryPolicy policy;
+    private final RetryBudget budget;
+    private final RateLimiter limiter;
+    private final String limiterKey;
+
+    private boolean deposits = true;
+    private volatile boolean canceled;
+    private volatile Call current;
+    private volatile Future<?> scheduled;
+    private int attempt;
+
+    RetryingCall(OkHttpClient client, Request request, RetryPolicy policy, RetryBudget budget,
+                 RateLimiter limiter, String limiterKey) {
+        this.client = client;
+        this.request = request;
+        this.policy = policy;
+        this.budget = budget;
+        this.limiter = limiter;
+        this.limiterKey = limiterKey;
+    }
+
+    /**
+     * Marks this call as the hedge of another call, which has already deposited into the retry budget.
+     */
+    RetryingCall asHedge() {
+        deposits = false;
+        return this;
+    }
+
+    @Override
+    public Response execute() throws IOException {
+        while (true) {
+            Call call = newCall();
+            if (limiter != null) {
+                sleep(limiter.acquire(limiterKey), TimeUnit.NANOSECONDS);
+            }
+            long delay;
+            try {
+                Response response = call.execute();
+                delay = retryDelay(response);
+                if (delay < 0) {
+                    return response;
+                }
+                response.close();
+                logRetry(delay, "HTTP " + response.code());
+            } catch (IOException e) {
+                delay = retryDelay(e);
+                if (delay < 0) {
+                    throw e;
+                }
+                logRetry(delay, e.toString());
+            }
+            sleep(delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void enqueue(Callback callback, Executor executor) {
+        Call call = newCall();
+        long wait = 0;
+        if (limiter != null) {
+            try {
+                wait = limiter.acquire(limiterKey);
+            } catch (RateLimitExceededException e) {
+                callback.onFailure(call, e);
+                return;
+            }
+        }
+        if (wait > 0) {
+            schedule(() -> start(call, callback, executor), wait, TimeUnit.NANOSECONDS);
+        } else {
+            start(call, callback, executor);
+        }
+    }
+
+    private void start(Call call, Callback callback, Executor executor) {
+        Callback attemptCallback = new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                long delay = retryDelay(e);
+                if (delay < 0) {
+                    callback.onFailure(call, e);
+                    return;
+                }
+                logRetry(delay, e.toString());
+                scheduleRetry(callback, executor, delay);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) throws IOException {
+                long delay = retryDelay(response);
+                if (delay < 0) {
+                    callback.onResponse(call, response);
+                    return;
+                }
+                response.close();
+                logRetry(delay, "HTTP " + response.code());
+                scheduleRetry(callback, executor, delay);
+            }
+        };
+        if (executor == null) {
+            call.enqueue(attemptCallback);
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                Response response;
+                try {
+                    response = call.execute();
+                } catch (IOException e) {
+                    attemptCallback.onFailure(call, e);
+                    return;
+                } catch (RuntimeException e) {
+                    // reported as OkHttp's dispatcher does, so the caller's future completes; not retried
+                    IOException failure = new IOException("canceled due to " + e, e);
+                    callback.onFailure(call, failure);
+                    return;
+                }
+                try {
+                    attemptCallback.onResponse(call, response);
+                } catch (IOException e) {
+                    response.close();
+                    callback.onFailure(call, e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            callback.onFailure(call, new IOException("Async executor rejected the call", e));
+        }
+    }
+
+    @Override
+    public void cancel() {
+        canceled = true;
+        Future<?> pending = scheduled;
+        if (pending != null) {
+            pending.cancel(false);
+        }
+        Call call = current;
+        if (call != null) {
+            call.cancel();
+        }
+    }
+
+    private long retryDelay(Response response) {
+        return canceled ? -1 : withinBudget(policy.retryDelay(request, attempt, response));
+    }
+
+    private long retryDelay(IOException failure) {
+        return canceled ? -1 : withinBudget(policy.retryDelay(request, attempt, failure));
+    }
+
+    private long withinBudget(long delay) {
+        if (delay < 0 || budget == null || budget.tryRetry(request.url().host())) {
+            return delay;
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Retry budget exhausted, not retrying {} {}", request.method(), request.url());
+        }
+        return -1;
+    }
+
+    private Call newCall() {
+        if (attempt++ == 0 && deposits && budget != null) {
+            budget.onRequest(request.url().host());
+        }
+        Call call = client.newCall(request);
+        current = call;
+        if (canceled) {
+            call.cancel();
+        }
+        return call;
+    }
+
+    private void scheduleRetry(Callback callback, Executor executor, long delay) {
+        schedule(() -> enqueue(callback, executor), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void schedule(Runnable task, long delay, TimeUnit unit) {
+        scheduled = SharedScheduler.schedule(task, delay, unit);
+        if (canceled) {
+            scheduled.cancel(false);
+        }
+    }
+
+    private void logRetry(long delay, String cause) {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Retrying {} {} in {} ms after attempt {}/{} failed: {}",
+                    request.method(), request.url(), delay, attempt, policy.getMaxAttempts(), cause);
+        }
+    }
+
+    private static void sleep(long delay, TimeUnit unit) throws InterruptedIOException {
+        if (delay <= 0) {
+            return;
+        }
+        try {
+            unit.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to send the request");
+        }
+    }
+}
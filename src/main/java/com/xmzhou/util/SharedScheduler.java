@@ -0,0 +1,30 @@
+package com.xmzhou.util;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single daemon timer thread for delayed work such as retry backoff or rate limiting, so waiting never blocks
+ * a caller's thread.
+ * <p>
+ * Scheduled tasks must be short and non-blocking; they typically just enqueue the next call.
+ */
+final class SharedScheduler {
+    private static final ScheduledThreadPoolExecutor EXECUTOR = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "HttpUtil Scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        EXECUTOR.setRemoveOnCancelPolicy(true);
+    }
+
+    private SharedScheduler() {
+    }
+
+    static ScheduledFuture<?> schedule(Runnable task, long delay, TimeUnit unit) {
+        return EXECUTOR.schedule(task, delay, unit);
+    }
+}
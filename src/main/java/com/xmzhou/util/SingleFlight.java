@@ -0,0 +1,116 @@
+package com.xmzhou.util;
+
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces identical concurrent requests of one client: while a request for a key is in flight, further
+ * requests for the key wait for it instead of sending their own. Every caller receives its own copy of the
+ * buffered response.
+ */
+final class SingleFlight {
+    private final ConcurrentMap<String, CompletableFuture<Shared>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder coalesced = new LongAdder();
+
+    long coalescedRequests() {
+        return coalesced.sum();
+    }
+
+    /**
+     * Executes the buffered request on the calling thread, or waits for the identical request in flight.
+     */
+    Response execute(String key, Callable<Response> call) throws Exception {
+        CompletableFuture<Shared> flight = new CompletableFuture<>();
+        CompletableFuture<Shared> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            coalesced.increment();
+            try {
+                return existing.get().copy();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a coalesced request");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                throw cause instanceof Exception ? (Exception) cause : new IOException(cause);
+            }
+        }
+        Shared shared;
+        try {
+            shared = new Shared(call.call());
+        } catch (Throwable e) {
+            // also on errors, so that later callers do not wait for a flight that never lands
+            inFlight.remove(key, flight);
+            flight.completeExceptionally(e);
+            throw e;
+        }
+        inFlight.remove(key, flight);
+        flight.complete(shared);
+        return shared.copy();
+    }
+
+    /**
+     * Starts the buffered request asynchronously, or joins the identical request in flight.
+     */
+    CompletableFuture<Response> executeAsync(String key, Supplier<CompletableFuture<Response>> call) {
+        CompletableFuture<Shared> flight = new CompletableFuture<>();
+        CompletableFuture<Shared> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            coalesced.increment();
+            return existing.thenApply(Shared::copy);
+        }
+        CompletableFuture<Response> started;
+        try {
+            started = call.get();
+        } catch (Throwable e) {
+            inFlight.remove(key, flight);
+            flight.completeExceptionally(e);
+            return flight.thenApply(Shared::copy);
+        }
+        started.whenComplete((response, e) -> {
+            inFlight.remove(key, flight);
+            if (e != null) {
+                flight.completeExceptionally(e);
+                return;
+            }
+            try {
+                flight.complete(new Shared(response));
+            } catch (Throwable readFailure) {
+                flight.completeExceptionally(readFailure);
+            }
+        });
+        // a dependent future, so that one caller cancelling does not cancel the others
+        return flight.thenApply(Shared::copy);
+    }
+
+    /**
+     * A buffered response whose body can be handed out any number of times.
+     */
+    private static final class Shared {
+        private final Response response;
+        private final byte[] body;
+
+        Shared(Response response) throws IOException {
+            this.response = response;
+            this.body = response.body() == null ? null : response.body().bytes();
+        }
+
+        Response copy() {
+            if (body == null) {
+                return response;
+            }
+            return response.newBuilder()
+                    .body(ResponseBody.create(response.body().contentType(), body))
+                    .build();
+        }
+    }
+}
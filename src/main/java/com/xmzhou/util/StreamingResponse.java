@@ -0,0 +1,123 @@
+package com.xmzhou.util;
+
+import okhttp3.Headers;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+
+import java.io.Closeable;
+import java.io.InputStream;
+
+/**
+ * <h3> Streaming view over a live HTTP response.</h3>
+ *
+ * <p>
+ * Returned by {@link HttpUtil.RequestBuilder#executeStreaming()}. The body is read straight
+ * from the connection instead of being buffered in memory, so bodies of any size can be
+ * processed in constant memory. The handle must be closed to release the connection.
+ * </p>
+ *
+ * <pre>
+ *  Usage:
+ * <code>try (StreamingResponse response = HttpUtil.get(url).executeStreaming()) {
+ *      BufferedSource source = response.source();
+ *      ...
+ *  }</code>
+ * </pre>
+ */
+public class StreamingResponse implements Closeable {
+    private final Response response;
+    private final ResponseBody body;
+
+    /**
+     * Request tag marking a response body that is read as a stream; interceptors must not buffer or peek it.
+     */
+    static final class Streamed {
+        static final Streamed INSTANCE = new Streamed();
+
+        private Streamed() {
+        }
+    }
+
+    /**
+     * Returns whether the request was sent by {@link HttpUtil.RequestBuilder#executeStreaming()} or a download.
+     */
+    static boolean isStreamed(Request request) {
+        return request.tag(Streamed.class) != null;
+    }
+
+    StreamingResponse(Response response) {
+        this.response = response;
+        this.body = response.body();
+        if (body == null) {
+            response.close();
+            throw new IllegalStateException("Response body is null");
+        }
+    }
+
+    /**
+     * Returns the underlying response. Its body is the live, unbuffered stream.
+     *
+     * @return the raw response
+     */
+    public Response response() {
+        return response;
+    }
+
+    public int code() {
+        return response.code();
+    }
+
+    public boolean isSuccessful() {
+        return response.isSuccessful();
+    }
+
+    public Headers headers() {
+        return response.headers();
+    }
+
+    public String header(String name) {
+        return response.header(name);
+    }
+
+    public MediaType contentType() {
+        return body.contentType();
+    }
+
+    /**
+     * Returns the body length, or -1 if it is unknown.
+     *
+     * @return the content length
+     */
+    public long contentLength() {
+        return body.contentLength();
+    }
+
+    /**
+     * Returns the live body source. Bytes are pulled from the socket as they are read.
+     *
+     * @return the body source
+     */
+    public BufferedSource source() {
+        return body.source();
+    }
+
+    /**
+     * Returns the live body as an {@link InputStream}.
+     *
+     * @return the body stream
+     */
+    public InputStream byteStream() {
+        return body.byteStream();
+    }
+
+    /**
+     * Closes the body and releases the underlying connection.
+     */
+    @Override
+    public void close() {
+        response.close();
+    }
+}
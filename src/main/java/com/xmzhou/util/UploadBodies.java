@@ -0,0 +1,134 @@
+package com.xmzhou.util;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.Okio;
+import okio.Source;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Request bodies that stream their content instead of holding it in a byte array.
+ */
+final class UploadBodies {
+    private UploadBodies() {
+    }
+
+    /**
+     * Streams a file from disk. The body can be written any number of times.
+     */
+    static RequestBody path(MediaType contentType, Path path) {
+        return new RequestBody() {
+            @Override
+            public MediaType contentType() {
+                return contentType;
+            }
+
+            @Override
+            public long contentLength() throws IOException {
+                return Files.size(path);
+            }
+
+            @Override
+            public void writeTo(BufferedSink sink) throws IOException {
+                try (Source source = Okio.source(path)) {
+                    sink.writeAll(source);
+                }
+            }
+        };
+    }
+
+    /**
+     * Streams an {@link InputStream}. The stream can only be consumed once, so the body is one-shot.
+     *
+     * @param contentLength the number of bytes in the stream, or -1 to send it chunked
+     */
+    static RequestBody stream(MediaType contentType, InputStream inputStream, long contentLength) {
+        AtomicBoolean consumed = new AtomicBoolean();
+        return new RequestBody() {
+            @Override
+            public MediaType contentType() {
+                return contentType;
+            }
+
+            @Override
+            public long contentLength() {
+                return contentLength;
+            }
+
+            @Override
+            public boolean isOneShot() {
+                return true;
+            }
+
+            @Override
+            public void writeTo(BufferedSink sink) throws IOException {
+                if (!consumed.compareAndSet(false, true)) {
+                    throw new IOException("Upload stream has already been consumed");
+                }
+                try (Source source = Okio.source(inputStream)) {
+                    sink.writeAll(source);
+                }
+            }
+        };
+    }
+
+    /**
+     * Streams a fresh {@link InputStream} from the supplier on every write, so the body can be replayed on retries.
+     *
+     * @param contentLength the number of bytes in each stream, or -1 to send it chunked
+     */
+    static RequestBody supplier(MediaType contentType, Supplier<? extends InputStream> supplier, long contentLength) {
+        return new RequestBody() {
+            @Override
+            public MediaType contentType() {
+                return contentType;
+            }
+
+            @Override
+            public long contentLength() {
+                return contentLength;
+            }
+
+            @Override
+            public void writeTo(BufferedSink sink) throws IOException {
+                try (Source source = Okio.source(supplier.get())) {
+                    sink.writeAll(source);
+                }
+            }
+        };
+    }
+
+    /**
+     * Marks a composite body as one-shot, for example a multipart body wrapping a one-shot part.
+     */
+    static RequestBody oneShot(RequestBody delegate) {
+        return new RequestBody() {
+            @Override
+            public MediaType contentType() {
+                return delegate.contentType();
+            }
+
+            @Override
+            public long contentLength() throws IOException {
+                return delegate.contentLength();
+            }
+
+            @Override
+            public boolean isOneShot() {
+                return true;
+            }
+
+            @Override
+            public void writeTo(BufferedSink sink) throws IOException {
+                delegate.writeTo(sink);
+            }
+        };
+    }
+}
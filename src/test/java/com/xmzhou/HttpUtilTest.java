@@ -1,24 +1,78 @@
 package com.xmzhou;
 
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import com.github.luben.zstd.Zstd;
+import com.xmzhou.util.AdaptiveConcurrencyLimiter;
+import com.xmzhou.util.CachingDns;
+import com.xmzhou.util.CircuitBreaker;
+import com.xmzhou.util.CircuitBreakerOpenException;
+import com.xmzhou.util.ClientStats;
+import com.xmzhou.util.ConcurrencyLimitExceededException;
+import com.xmzhou.util.HttpClientConfig;
+import com.xmzhou.util.HedgePolicy;
+import com.xmzhou.util.HttpCache;
+import com.xmzhou.util.HttpClientProfile;
 import com.xmzhou.util.HttpUtil;
+import com.xmzhou.util.RateLimitExceededException;
+import com.xmzhou.util.RateLimiter;
+import com.xmzhou.util.RequestCompression;
+import com.xmzhou.util.RetryBudget;
+import com.xmzhou.util.RetryPolicy;
+import com.xmzhou.util.StreamingResponse;
+import okhttp3.CacheControl;
+import okhttp3.Dns;
 import okhttp3.HttpUrl;
+import okhttp3.Protocol;
 import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
 import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import okio.Buffer;
+import okio.GzipSink;
+import okio.GzipSource;
+import okio.InflaterSource;
+import okio.Okio;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
 import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.Inflater;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -59,6 +113,21 @@ class HttpUtilTest {
         assertEquals(expectedBody, response.body().string());
     }
 
+    @Test
+    public void testQueryParameters() throws Exception {
+        mockWebServer.enqueue(new MockResponse().setBody("ok"));
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("page", 2);
+        params.put("q", "a b");
+
+        HttpUtil.get(buildUrl("/search?sort=asc"))
+                .param("type", "test")
+                .params(params)
+                .execute();
+
+        assertEquals("/search?sort=asc&type=test&page=2&q=a%20b", mockWebServer.takeRequest().getPath());
+    }
+
     @Test
     public void testPostRequest() throws Exception {
         String expectedBody = "{\"message\":\"Success\"}";
@@ -149,6 +218,55 @@ class HttpUtilTest {
         assertEquals(400, response.code());
     }
 
+    @Test
+    public void testUploadFileFromPath(@TempDir Path tempDir) throws Exception {
+        Path file = tempDir.resolve("bundle.log");
+        Files.write(file, "log line from disk".getBytes(StandardCharsets.UTF_8));
+        mockWebServer.enqueue(new MockResponse().setResponseCode(200));
+
+        HttpUtil.uploadFile(buildUrl("/upload"))
+                .formData(Collections.emptyMap(), Collections.singletonList(HttpUtil.UploadFile.of("file", "bundle.log", file)))
+                .execute();
+
+        RecordedRequest recordedRequest = mockWebServer.takeRequest();
+        assertNotNull(recordedRequest.getHeader("Content-Length"));
+        String body = recordedRequest.getBody().readUtf8();
+        assertTrue(body.contains("filename=\"bundle.log\""));
+        assertTrue(body.contains("log line from disk"));
+    }
+
+    @Test
+    public void testUploadFileFromSupplier() throws Exception {
+        byte[] data = "replayable content".getBytes(StandardCharsets.UTF_8);
+        mockWebServer.enqueue(new MockResponse().setResponseCode(200));
+
+        HttpUtil.UploadFile uploadFile = HttpUtil.UploadFile.of("file", "data.txt", () -> new ByteArrayInputStream(data), -1);
+        Response response = HttpUtil.uploadFile(buildUrl("/upload"))
+                .formData(Collections.emptyMap(), Collections.singletonList(uploadFile))
+                .execute();
+
+        assertEquals(200, response.code());
+        RecordedRequest recordedRequest = mockWebServer.takeRequest();
+        assertEquals("chunked", recordedRequest.getHeader("Transfer-Encoding"));
+        assertTrue(recordedRequest.getBody().readUtf8().contains("replayable content"));
+    }
+
+    @Test
+    public void testUploadFileFromInputStream() throws Exception {
+        byte[] data = "one-shot content".getBytes(StandardCharsets.UTF_8);
+        mockWebServer.enqueue(new MockResponse().setResponseCode(200));
+
+        // the debug log must leave the one-shot body to the connection
+        HttpUtil.setLogLevel("DEBUG");
+        HttpUtil.UploadFile uploadFile = HttpUtil.UploadFile.of("file", "stream.txt", new ByteArrayInputStream(data), data.length);
+        Response response = HttpUtil.uploadFile(buildUrl("/upload"))
+                .formData(Collections.emptyMap(), Collections.singletonList(uploadFile))
+                .execute();
+
+        assertEquals(200, response.code());
+        assertTrue(mockWebServer.takeRequest().getBody().readUtf8().contains("one-shot content"));
+    }
+
     @Test
     public void testExecuteAsyncSuccess() throws Exception {
         String url = mockWebServer.url("/").toString();
@@ -165,6 +283,830 @@ class HttpUtilTest {
         assertEquals("response body", response.body().string());
     }
 
+    @Test
+    public void testConfigureDispatcherLimits() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            mockWebServer.enqueue(new MockResponse().setBody("slow").setBodyDelay(500, TimeUnit.MILLISECONDS));
+        }
+        try {
+            HttpUtil.configure(HttpClientConfig.builder().maxRequestsPerHost(1).build());
+            List<CompletableFuture<Response>> futures = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                futures.add(HttpUtil.get(buildUrl("/limited")).executeAsync());
+            }
+
+            ClientStats stats = HttpUtil.stats();
+            assertEquals(1, stats.getRunningCalls());
+            assertEquals(2, stats.getQueuedCalls());
+
+            HttpUtil.configure(HttpClientConfig.builder().maxRequestsPerHost(3).build());
+            assertEquals(0, HttpUtil.stats().getQueuedCalls());
+            for (CompletableFuture<Response> future : futures) {
+                assertEquals("slow", future.get().body().string());
+            }
+        } finally {
+            HttpUtil.configure(HttpClientConfig.builder().build());
+        }
+    }
+
+    @Test
+    public void testConfigureConnectionPool() throws Exception {
+        mockWebServer.enqueue(new MockResponse().setBody("pooled"));
+        try {
+            HttpUtil.configure(HttpClientConfig.builder().maxIdleConnections(10).keepAliveSeconds(30).build());
+            assertEquals("pooled", HttpUtil.get(buildUrl("/pool")).execute().body().string());
+            assertEquals(1, HttpUtil.stats().getIdleConnections());
+        } finally {
+            HttpUtil.configure(HttpClientConfig.builder().build());
+        }
+    }
+
+    @Test
+    public void testClientConfigIsImmutable() {
+        HttpClientConfig.Builder builder = HttpClientConfig.builder().maxIdleConnections(2);
+        HttpClientConfig config = builder.build();
+        builder.maxIdleConnections(7).addInterceptor(chain -> chain.proceed(chain.request()));
+
+        assertEquals(2, config.getMaxIdleConnections());
+        assertTrue(config.getInterceptors().isEmpty());
+        assertEquals(7, builder.build().getMaxIdleConnections());
+    }
+
+    @Test
+    public void testNamedClientsAreIsolated() throws Exception {
+        mockWebServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                MockResponse response = new MockResponse().setBody(request.getPath());
+                return request.getPath().startsWith("/slow") ? response.setBodyDelay(1, TimeUnit.SECONDS) : response;
+            }
+        });
+        HttpClientProfile slow = HttpUtil.client("slow-dependency", HttpClientConfig.builder().maxRequestsPerHost(1).build());
+        HttpClientProfile fast = HttpUtil.client("fast-dependency", HttpClientConfig.builder()
+                .maxRequestsPerHost(1)
+                .addInterceptor(chain -> chain.proceed(chain.request().newBuilder().header("X-Client", "fast").build()))
+                .build());
+        assertSame(slow, HttpUtil.client("slow-dependency"));
+
+        List<CompletableFuture<Response>> slowCalls = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            slowCalls.add(slow.get(buildUrl("/slow")).executeAsync());
+        }
+        Response response = fast.get(buildUrl("/fast")).executeAsync().get(500, TimeUnit.MILLISECONDS);
+
+        assertEquals("/fast", response.body().string());
+        assertEquals(2, slow.stats().getQueuedCalls());
+        assertEquals(0, HttpUtil.stats().getQueuedCalls());
+        RecordedRequest fastRequest = mockWebServer.takeRequest();
+        while (!"/fast".equals(fastRequest.getPath())) {
+            fastRequest = mockWebServer.takeRequest();
+        }
+        assertEquals("fast", fastRequest.getHeader("X-Client"));
+        for (CompletableFuture<Response> slowCall : slowCalls) {
+            slowCall.get();
+        }
+    }
+
+    @Test
+    public void testRetryIdempotentRequest() throws Exception {
+        RetryPolicy policy = RetryPolicy.builder().maxAttempts(3).initialBackoffMillis(10).maxBackoffMillis(50).build();
+        // the next attempt needs a new connection for the disconnect to fail it
+        mockWebServer.enqueue(new MockResponse().setResponseCode(503).setHeader("Connection", "close"));
+        mockWebServer.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AT_START));
+        mockWebServer.enqueue(new MockResponse().setBody("recovered"));
+
+        Response response = HttpUtil.get(buildUrl("/retry")).retry(policy).execute();
+        assertEquals("recovered", response.body().string());
+        assertEquals(3, mockWebServer.getRequestCount());
+
+        // POST is not idempotent and is returned as is
+        mockWebServer.enqueue(new MockResponse().setResponseCode(503));
+        assertEquals(503, HttpUtil.post(buildUrl("/retry")).body("{}").retry(policy).execute().code());
+        assertEquals(4, mockWebServer.getRequestCount());
+
+        // attempts are exhausted
+        for (int i = 0; i < 3; i++) {
+            mockWebServer.enqueue(new MockResponse().setResponseCode(429));
+        }
+        assertEquals(429, HttpUtil.get(buildUrl("/retry")).retry(policy).execute().code());
+        assertEquals(7, mockWebServer.getRequestCount());
+    }
+
+    @Test
+    public void testRetryAsyncHonorsRetryAfter() throws Exception {
+        RetryPolicy policy = RetryPolicy.builder().maxAttempts(2).maxRetryAfterMillis(2_000).build();
+        mockWebServer.enqueue(new MockResponse().setResponseCode(503).setHeader("Retry-After", "1"));
+        mockWebServer.enqueue(new MockResponse().setBody("after retry"));
+
+        long start = System.nanoTime();
+        Response response = HttpUtil.put(buildUrl("/retry")).body("{}").retry(policy).executeAsync().get(5, TimeUnit.SECONDS);
+        assertEquals("after retry", response.body().string());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 1_000);
+
+        // a Retry-After beyond the limit ends the retries
+        mockWebServer.enqueue(new MockResponse().setResponseCode(503).setHeader("Retry-After", "120"));
+        assertEquals(503, HttpUtil.get(buildUrl("/retry")).retry(policy).executeAsync().get(5, TimeUnit.SECONDS).code());
+        assertEquals(3, mockWebServer.getRequestCount());
+    }
+
+    @Test
+    public void testRetryOneShotBodyIsNotRetried() throws Exception {
+        RetryPolicy policy = RetryPolicy.builder().retryNonIdempotent(true).initialBackoffMillis(10).build();
+        mockWebServer.enqueue(new MockResponse().setResponseCode(503));
+        List<HttpUtil.UploadFile> files = Collections.singletonList(HttpUtil.UploadFile.of("file", "data.bin",
+                new ByteArrayInputStream(new byte[]{1, 2, 3}), 3));
+
+        Response response = HttpUtil.uploadFile(buildUrl("/upload")).formData(Collections.emptyMap(), files).retry(policy).execute();
+        assertEquals(503, response.code());
+        assertEquals(1, mockWebServer.getRequestCount());
+    }
+
+    @Test
+    public void testRetryBudget() throws Exception {
+        RetryBudget budget = RetryBudget.builder().ratio(0.5).maxRetries(1).build();
+        HttpClientProfile client = HttpUtil.client("retry-budget", HttpClientConfig.builder()
+                .retryPolicy(RetryPolicy.builder().maxAttempts(5).initialBackoffMillis(10).build())
+                .retryBudget(budget)
+                .build());
+        String host = mockWebServer.getHostName();
+        for (int i = 0; i < 4; i++) {
+            mockWebServer.enqueue(new MockResponse().setResponseCode(503));
+        }
+
+        // the full bucket allows one retry, then the second request earns only half a retry
+        assertEquals(503, client.get(buildUrl("/budget")).execute().code());
+        assertEquals(2, mockWebServer.getRequestCount());
+        assertEquals(503, client.get(buildUrl("/budget")).execute().code());
+        assertEquals(3, mockWebServer.getRequestCount());
+        assertEquals(0.5, budget.availableRetries(host), 0.001);
+
+        // the third request completes the token, which the next retry spends
+        mockWebServer.enqueue(new MockResponse().setBody("ok"));
+        assertEquals("ok", client.get(buildUrl("/budget")).execute().body().string());
+        assertEquals(5, mockWebServer.getRequestCount());
+
+        ClientStats stats = client.stats();
+        assertEquals(2, stats.getRetries());
+        assertEquals(2, stats.getRejectedRetries());
+        assertEquals(3, budget.getRequests());
+    }
+
+    @Test
+    public void testHedgedGetInterceptorFailure() {
+        HttpClientProfile client = HttpUtil.client("hedge-interceptor-failure", HttpClientConfig.builder()
+                .addInterceptor(chain -> {
+                    throw new IllegalStateException("broken interceptor");
+                })
+                .build());
+        HedgePolicy hedging = HedgePolicy.builder().delayMillis(50).build();
+
+        // the failure surfaces as it does without hedging, instead of leaving the caller waiting
+        Exception e = assertTimeoutPreemptively(Duration.ofSeconds(5),
+                () -> assertThrows(Exception.class, () -> client.get(buildUrl("/hedge")).hedge(hedging).execute()));
+        assertTrue(e instanceof IllegalStateException || e.getCause() instanceof IllegalStateException
+                || Arrays.asList(e.getSuppressed()).stream().anyMatch(IllegalStateException.class::isInstance), e.toString());
+
+        // also when the attempts run as blocking calls on an executor
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            CompletableFuture<Response> future = client.get(buildUrl("/hedge")).hedge(hedging).executeAsync(executor);
+            ExecutionException failure = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalStateException.class, failure.getCause().getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testHedgedGet() throws Exception {
+        AtomicInteger served = new AtomicInteger();
+        mockWebServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                // the first request hits a slow replica
+                return served.getAndIncrement() == 0
+                        ? new MockResponse().setBody("slow").setHeadersDelay(3, TimeUnit.SECONDS)
+                        : new MockResponse().setBody("fast");
+            }
+        });
+        HedgePolicy hedging = HedgePolicy.builder().delayMillis(100).build();
+
+        long start = System.nanoTime();
+        assertEquals("fast", HttpUtil.get(buildUrl("/hedge")).hedge(hedging).execute().body().string());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2_000);
+        assertEquals(1, hedging.getHedges());
+        assertEquals(1, hedging.getHedgeWins());
+
+        // fast responses are not hedged, and POST never is
+        assertEquals("fast", HttpUtil.get(buildUrl("/hedge")).hedge(hedging).executeAsync().get().body().string());
+        assertEquals("fast", HttpUtil.post(buildUrl("/hedge")).body("{}").hedge(hedging).execute().body().string());
+        assertEquals(2, hedging.getRequests());
+        assertEquals(1, hedging.getHedges());
+        assertEquals(4, served.get());
+    }
+
+    @Test
+    public void testHedgedExecuteOnCallingThread() throws Exception {
+        List<String> threads = Collections.synchronizedList(new ArrayList<>());
+        RetryBudget budget = RetryBudget.builder().build();
+        HttpClientProfile client = HttpUtil.client("hedged-sync", HttpClientConfig.builder()
+                .retryBudget(budget)
+                .addInterceptor(chain -> {
+                    threads.add(Thread.currentThread().getName());
+                    return chain.proceed(chain.request());
+                })
+                .build());
+        AtomicInteger served = new AtomicInteger();
+        mockWebServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return served.getAndIncrement() == 0
+                        ? new MockResponse().setBody("slow").setHeadersDelay(3, TimeUnit.SECONDS)
+                        : new MockResponse().setBody("fast");
+            }
+        });
+        HedgePolicy hedging = HedgePolicy.builder().delayMillis(100).build();
+
+        assertEquals("fast", client.get(buildUrl("/hedge")).hedge(hedging).execute().body().string());
+        // only the hedge runs on the dispatcher, so synchronous calls are not queued behind its limits
+        assertEquals(2, threads.size());
+        assertEquals(Thread.currentThread().getName(), threads.get(0));
+        assertNotEquals(Thread.currentThread().getName(), threads.get(1));
+        // the hedge is not a request of its own
+        assertEquals(1, budget.getRequests());
+    }
+
+    @Test
+    public void testHedgeRateCap() throws Exception {
+        mockWebServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse().setBody("slow").setHeadersDelay(300, TimeUnit.MILLISECONDS);
+            }
+        });
+        HedgePolicy hedging = HedgePolicy.builder().delayMillis(10).maxHedgeRatio(0).maxBurst(1).build();
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals("slow", HttpUtil.get(buildUrl("/hedge")).hedge(hedging).execute().body().string());
+        }
+        assertEquals(1, hedging.getHedges());
+        assertEquals(2, hedging.getSkippedHedges());
+    }
+
+    @Test
+    public void testCircuitBreaker() throws Exception {
+        CircuitBreaker breaker = CircuitBreaker.builder()
+                .windowSize(4)
+                .minimumCalls(4)
+                .failureRateThreshold(0.5)
+                .openDurationMillis(300)
+                .halfOpenCalls(1)
+                .build();
+        HttpClientProfile client = HttpUtil.client("circuit-breaker", HttpClientConfig.builder()
+                .circuitBreaker(breaker)
+                .retryPolicy(RetryPolicy.builder().initialBackoffMillis(10).build())
+                .build());
+        String host = mockWebServer.getHostName();
+        for (int i = 0; i < 4; i++) {
+            mockWebServer.enqueue(new MockResponse().setResponseCode(i < 2 ? 200 : 500));
+        }
+        for (int i = 0; i < 4; i++) {
+            client.get(buildUrl("/breaker")).execute();
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state(host));
+
+        // fails fast without reaching the server, and is not retried
+        CircuitBreakerOpenException e = assertThrows(CircuitBreakerOpenException.class,
+                () -> client.get(buildUrl("/breaker")).execute());
+        assertEquals(host, e.getKey());
+        assertEquals(4, mockWebServer.getRequestCount());
+        assertEquals(1, breaker.getRejectedCalls());
+
+        // a healthy probe closes the breaker again
+        Thread.sleep(400);
+        mockWebServer.enqueue(new MockResponse().setBody("probe"));
+        assertEquals("probe", client.get(buildUrl("/breaker")).execute().body().string());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state(host));
+    }
+
+    @Test
+    public void testConcurrencyLimitDoesNotOpenCircuitBreaker() throws Exception {
+        CircuitBreaker breaker = CircuitBreaker.builder()
+                .windowSize(2)
+                .minimumCalls(2)
+                .failureRateThreshold(0.5)
+                .build();
+        AdaptiveConcurrencyLimiter limiter = AdaptiveConcurrencyLimiter.builder()
+                .initialLimit(1)
+                .maxLimit(1)
+                .build();
+        HttpClientProfile client = HttpUtil.client("breaker-and-limiter", HttpClientConfig.builder()
+                .circuitBreaker(breaker)
+                .concurrencyLimiter(limiter)
+                .build());
+        String host = mockWebServer.getHostName();
+        mockWebServer.enqueue(new MockResponse().setBody("slow").setHeadersDelay(500, TimeUnit.MILLISECONDS));
+        CompletableFuture<Response> slow = client.get(buildUrl("/slow")).executeAsync();
+        for (int i = 0; i < 50 && limiter.inFlight(host) == 0; i++) {
+            Thread.sleep(10);
+        }
+
+        // calls shed locally are not failures of the host
+        for (int i = 0; i < 3; i++) {
+            assertThrows(ConcurrencyLimitExceededException.class, () -> client.get(buildUrl("/slow")).execute());
+        }
+        assertEquals(3, limiter.getRejectedCalls());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state(host));
+        assertEquals("slow", slow.get(5, TimeUnit.SECONDS).body().string());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state(host));
+    }
+
+    @Test
+    public void testCircuitBreakerSlowCalls() throws Exception {
+        CircuitBreaker breaker = CircuitBreaker.builder()
+                .windowSize(2)
+                .minimumCalls(2)
+                .slowCallDurationMillis(100)
+                .slowCallRateThreshold(1.0)
+                .build();
+        HttpClientProfile client = HttpUtil.client("circuit-breaker-slow", HttpClientConfig.builder().circuitBreaker(breaker).build());
+        for (int i = 0; i < 2; i++) {
+            mockWebServer.enqueue(new MockResponse().setHeadersDelay(150, TimeUnit.MILLISECONDS));
+            assertEquals(200, client.get(buildUrl("/slow")).execute().code());
+        }
+        ExecutionException e = assertThrows(ExecutionException.class, () -> client.get(buildUrl("/slow")).executeAsync().get());
+        assertInstanceOf(CircuitBreakerOpenException.class, e.getCause());
+    }
+
+    @Test
+    public void testRateLimiter() throws Exception {
+        mockWebServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse().setBody("ok");
+            }
+        });
+        RateLimiter limiter = RateLimiter.builder().permitsPerSecond(10).burst(2).build();
+
+        // two pass at once, the next two wait 100 ms each
+        long start = System.nanoTime();
+        for (int i = 0; i < 4; i++) {
+            assertEquals("ok", HttpUtil.get(buildUrl("/limited")).rateLimit(limiter).execute().body().string());
+        }
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 150);
+        assertEquals(2, limiter.getDelayedRequests());
+
+        // async calls are deferred without blocking the caller
+        start = System.nanoTime();
+        List<CompletableFuture<Response>> futures = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            futures.add(HttpUtil.get(buildUrl("/limited")).rateLimit(limiter, "api").executeAsync());
+        }
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 100);
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(5, TimeUnit.SECONDS);
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 50);
+        assertEquals(7, mockWebServer.getRequestCount());
+    }
+
+    @Test
+    public void testRateLimiterMaxWait() throws Exception {
+        mockWebServer.enqueue(new MockResponse().setBody("ok"));
+        RateLimiter limiter = RateLimiter.builder().permitsPerSecond(1).maxWaitMillis(100).build();
+        HttpClientProfile client = HttpUtil.client("rate-limited", HttpClientConfig.builder().rateLimiter(limiter).build());
+
+        assertEquals("ok", client.get(buildUrl("/limited")).execute().body().string());
+        RateLimitExceededException e = assertThrows(RateLimitExceededException.class,
+                () -> client.get(buildUrl("/limited")).retry(RetryPolicy.builder().build()).execute());
+        assertEquals(mockWebServer.getHostName(), e.getKey());
+        assertTrue(e.getWaitMillis() > 100);
+        assertEquals(1, limiter.getRejectedRequests());
+        assertEquals(1, mockWebServer.getRequestCount());
+    }
+
+    @Test
+    public void testAdaptiveConcurrencyLimiter() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = AdaptiveConcurrencyLimiter.builder()
+                .initialLimit(8)
+                .backoffRatio(0.5)
+                .rttTolerance(1_000)
+                .build();
+        HttpClientProfile client = HttpUtil.client("adaptive-limit", HttpClientConfig.builder().concurrencyLimiter(limiter).build());
+        String host = mockWebServer.getHostName();
+
+        // overload halves the limit
+        mockWebServer.enqueue(new MockResponse().setResponseCode(503));
+        mockWebServer.enqueue(new MockResponse().setResponseCode(429));
+        client.get(buildUrl("/adaptive")).execute();
+        client.get(buildUrl("/adaptive")).execute();
+        assertEquals(2, limiter.limit(host));
+
+        // calls beyond the limit are rejected
+        for (int i = 0; i < 2; i++) {
+            mockWebServer.enqueue(new MockResponse().setBody("slow").setHeadersDelay(300, TimeUnit.MILLISECONDS));
+        }
+        CompletableFuture<Response> first = client.get(buildUrl("/adaptive")).executeAsync();
+        CompletableFuture<Response> second = client.get(buildUrl("/adaptive")).executeAsync();
+        Thread.sleep(100);
+        assertEquals(2, limiter.inFlight(host));
+        assertThrows(ConcurrencyLimitExceededException.class, () -> client.get(buildUrl("/adaptive")).execute());
+        assertEquals(1, limiter.getRejectedCalls());
+
+        // a healthy call raises the limit while at least half of it is in use
+        assertEquals("slow", first.get().body().string());
+        assertEquals("slow", second.get().body().string());
+        assertEquals(3, limiter.limit(host));
+        assertEquals(0, limiter.inFlight(host));
+    }
+
+    @Test
+    public void testMemoryCache() throws Exception {
+        HttpCache cache = HttpCache.builder().memoryMaxBytes(8).build();
+        HttpClientProfile client = HttpUtil.client("memory-cache", HttpClientConfig.builder().cache(cache).build());
+        mockWebServer.enqueue(new MockResponse().setBody("fresh").setHeader("Cache-Control", "max-age=60"));
+        mockWebServer.enqueue(new MockResponse().setBody("etag").setHeader("Cache-Control", "no-cache").setHeader("ETag", "\"v1\""));
+        mockWebServer.enqueue(new MockResponse().setResponseCode(304).setHeader("ETag", "\"v1\""));
+
+        assertEquals("fresh", client.get(buildUrl("/fresh")).execute().body().string());
+        assertEquals("fresh", client.get(buildUrl("/fresh")).execute().body().string());
+        assertEquals(1, cache.getMemoryHits());
+
+        // no-cache responses are revalidated with their ETag
+        assertEquals("etag", client.get(buildUrl("/etag")).execute().body().string());
+        assertEquals("etag", client.get(buildUrl("/etag")).execute().body().string());
+        mockWebServer.takeRequest();
+        mockWebServer.takeRequest();
+        assertEquals("\"v1\"", mockWebServer.takeRequest().getHeader("If-None-Match"));
+        assertEquals(1, cache.getRevalidatedHits());
+        assertEquals(2, cache.getMisses());
+
+        // the 8 byte limit evicted the least recently used entry
+        assertEquals(4, cache.memorySize());
+        mockWebServer.enqueue(new MockResponse().setBody("network"));
+        assertEquals("network", client.get(buildUrl("/fresh")).execute().body().string());
+        assertEquals(4, mockWebServer.getRequestCount());
+
+        // a request can bypass the cache
+        mockWebServer.enqueue(new MockResponse().setBody("forced"));
+        assertEquals("forced", client.get(buildUrl("/etag")).cacheControl(CacheControl.FORCE_NETWORK).execute().body().string());
+        assertEquals(5, mockWebServer.getRequestCount());
+    }
+
+    @Test
+    public void testMemoryCacheSkipsStreamedBodies(@TempDir Path dir) throws Exception {
+        HttpCache cache = HttpCache.builder().memoryMaxBytes(1024).build();
+        HttpClientProfile client = HttpUtil.client("memory-cache-streaming", HttpClientConfig.builder().cache(cache).build());
+        mockWebServer.enqueue(new MockResponse().setChunkedBody("streamed", 4).setHeader("Cache-Control", "max-age=60"));
+        mockWebServer.enqueue(new MockResponse().setBody("downloaded").setHeader("Cache-Control", "max-age=60"));
+
+        try (StreamingResponse response = client.get(buildUrl("/stream")).executeStreaming()) {
+            assertEquals("streamed", response.source().readUtf8());
+        }
+        Path target = dir.resolve("download.txt");
+        assertEquals(10, client.get(buildUrl("/download")).downloadTo(target));
+        assertEquals(0, cache.memorySize());
+
+        mockWebServer.enqueue(new MockResponse().setBody("network"));
+        assertEquals("network", client.get(buildUrl("/stream")).execute().body().string());
+        assertEquals(3, mockWebServer.getRequestCount());
+    }
+
+    @Test
+    public void testDiskCache(@TempDir Path dir) throws Exception {
+        HttpCache cache = HttpCache.builder().directory(dir, 1024 * 1024).build();
+        HttpClientProfile client = HttpUtil.client("disk-cache", HttpClientConfig.builder().cache(cache).build());
+        mockWebServer.enqueue(new MockResponse().setBody("on disk").setHeader("Cache-Control", "max-age=60"));
+
+        assertEquals("on disk", client.get(buildUrl("/disk")).execute().body().string());
+        assertEquals("on disk", client.get(buildUrl("/disk")).execute().body().string());
+        assertEquals(1, mockWebServer.getRequestCount());
+        assertEquals(1, cache.getDiskHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void testStaleWhileRevalidate() throws Exception {
+        HttpCache cache = HttpCache.builder().memoryMaxBytes(1024).build();
+        HttpClientProfile client = HttpUtil.client("stale-cache", HttpClientConfig.builder().cache(cache).build());
+        mockWebServer.enqueue(new MockResponse().setBody("v1").setHeader("ETag", "\"v1\"")
+                .setHeader("Cache-Control", "max-age=0, stale-while-revalidate=60"));
+        mockWebServer.enqueue(new MockResponse().setBody("v2").setHeader("Cache-Control", "max-age=60"));
+
+        assertEquals("v1", client.get(buildUrl("/config")).execute().body().string());
+        // the stale entry is served at once and revalidated in the background
+        Response stale = client.get(buildUrl("/config")).execute();
+        assertEquals("v1", stale.body().string());
+        assertEquals("110 - \"Response is Stale\"", stale.header("Warning"));
+        mockWebServer.takeRequest();
+        assertEquals("\"v1\"", mockWebServer.takeRequest(5, TimeUnit.SECONDS).getHeader("If-None-Match"));
+
+        String body = "v1";
+        for (int i = 0; i < 100 && "v1".equals(body); i++) {
+            Thread.sleep(20);
+            body = client.get(buildUrl("/config")).execute().body().string();
+        }
+        assertEquals("v2", body);
+        assertEquals(2, mockWebServer.getRequestCount());
+        assertTrue(cache.getStaleHits() >= 1);
+    }
+
+    @Test
+    public void testStaleIfError() throws Exception {
+        HttpCache cache = HttpCache.builder().memoryMaxBytes(1024).staleIfErrorMillis(60_000).build();
+        HttpClientProfile client = HttpUtil.client("stale-if-error", HttpClientConfig.builder().cache(cache).build());
+        mockWebServer.enqueue(new MockResponse().setBody("ok").setHeader("Cache-Control", "max-age=0"));
+        mockWebServer.enqueue(new MockResponse().setResponseCode(503));
+        mockWebServer.enqueue(new MockResponse().setResponseCode(404));
+
+        assertEquals("ok", client.get(buildUrl("/flaky")).execute().body().string());
+        Response stale = client.get(buildUrl("/flaky")).execute();
+        assertEquals("ok", stale.body().string());
+        assertEquals("111 - \"Revalidation Failed\"", stale.header("Warning"));
+        assertEquals(1, cache.getStaleHits());
+
+        // client errors are passed on
+        assertEquals(404, client.get(buildUrl("/flaky")).execute().code());
+    }
+
+    @Test
+    public void testCoalescedRequests() throws Exception {
+        HttpClientProfile client = HttpUtil.client("coalesce");
+        mockWebServer.enqueue(new MockResponse().setBody("shared").setHeadersDelay(1, TimeUnit.SECONDS));
+        mockWebServer.enqueue(new MockResponse().setBody("next"));
+
+        int callers = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(callers - 1);
+        try {
+            List<CompletableFuture<String>> bodies = new ArrayList<>();
+            for (int i = 0; i < callers - 1; i++) {
+                bodies.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        start.await();
+                        return client.get(buildUrl("/coalesce")).coalesce("Authorization").execute().body().string();
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }, executor));
+            }
+            start.countDown();
+            Thread.sleep(200);
+            bodies.add(client.get(buildUrl("/coalesce")).coalesce("Authorization").executeAsync()
+                    .thenApply(response -> {
+                        try {
+                            return response.body().string();
+                        } catch (IOException e) {
+                            throw new IllegalStateException(e);
+                        }
+                    }));
+
+            // every caller reads its own copy of the one response
+            for (CompletableFuture<String> body : bodies) {
+                assertEquals("shared", body.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, mockWebServer.getRequestCount());
+            assertEquals(callers - 1, client.stats().getCoalescedRequests());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // a completed request is not reused
+        assertEquals("next", client.get(buildUrl("/coalesce")).coalesce().execute().body().string());
+        assertEquals(2, mockWebServer.getRequestCount());
+    }
+
+    @Test
+    public void testCoalescedRequestError() {
+        AtomicBoolean broken = new AtomicBoolean(true);
+        HttpClientProfile client = HttpUtil.client("coalesce-error", HttpClientConfig.builder()
+                .addInterceptor(chain -> {
+                    if (broken.getAndSet(false)) {
+                        throw new AssertionError("broken interceptor");
+                    }
+                    return chain.proceed(chain.request());
+                })
+                .build());
+        mockWebServer.enqueue(new MockResponse().setBody("recovered"));
+
+        // an error does not leave the request in flight for later callers
+        assertThrows(AssertionError.class, () -> client.get(buildUrl("/coalesce")).coalesce().execute());
+        assertTimeoutPreemptively(Duration.ofSeconds(5),
+                () -> assertEquals("recovered", client.get(buildUrl("/coalesce")).coalesce().execute().body().string()));
+    }
+
+    @Test
+    public void testRequestCompression() throws Exception {
+        String json = "{\"items\":[" + String.join(",", Collections.nCopies(200, "{\"id\":1,\"name\":\"item\"}")) + "]}";
+        mockWebServer.enqueue(new MockResponse().setBody("gzip"));
+        mockWebServer.enqueue(new MockResponse().setBody("small"));
+        mockWebServer.enqueue(new MockResponse().setBody("deflate"));
+
+        HttpUtil.put(buildUrl("/ingest")).body(json).compress(RequestCompression.builder().build()).execute();
+        RecordedRequest gzipped = mockWebServer.takeRequest();
+        assertEquals("gzip", gzipped.getHeader("Content-Encoding"));
+        assertTrue(gzipped.getBodySize() < json.length() / 4);
+        assertEquals(json, Okio.buffer(new GzipSource(gzipped.getBody())).readUtf8());
+
+        // bodies below the threshold are sent as they are
+        HttpUtil.put(buildUrl("/ingest")).body("{}").compress(RequestCompression.builder().build()).execute();
+        RecordedRequest small = mockWebServer.takeRequest();
+        assertNull(small.getHeader("Content-Encoding"));
+        assertEquals("{}", small.getBody().readUtf8());
+
+        HttpClientProfile client = HttpUtil.client("compressing", HttpClientConfig.builder()
+                .requestCompression(RequestCompression.builder().encoding(RequestCompression.Encoding.DEFLATE).build())
+                .build());
+        client.post(buildUrl("/ingest")).body(json).execute();
+        RecordedRequest deflated = mockWebServer.takeRequest();
+        assertEquals("deflate", deflated.getHeader("Content-Encoding"));
+        assertEquals(json, Okio.buffer(new InflaterSource(deflated.getBody(), new Inflater())).readUtf8());
+    }
+
+    @Test
+    public void testResponseDecoding() throws Exception {
+        String json = "{\"items\":[" + String.join(",", Collections.nCopies(100, "{\"id\":1}")) + "]}";
+        Buffer gzipped = new Buffer();
+        try (okio.BufferedSink sink = Okio.buffer(new GzipSink(gzipped))) {
+            sink.writeUtf8(json);
+        }
+        mockWebServer.enqueue(new MockResponse().setBody(gzipped.clone()).setHeader("Content-Encoding", "gzip"));
+        mockWebServer.enqueue(new MockResponse().setBody(gzipped).setHeader("Content-Encoding", "gzip"));
+
+        Response response = HttpUtil.get(buildUrl("/gzip")).execute();
+        assertEquals(json, response.body().string());
+        assertNull(response.header("Content-Encoding"));
+        String acceptEncoding = mockWebServer.takeRequest().getHeader("Accept-Encoding");
+        assertTrue(acceptEncoding.endsWith("gzip"));
+
+        // a request choosing its own encodings gets the body as it was sent
+        Response raw = HttpUtil.get(buildUrl("/gzip")).header(Collections.singletonMap("Accept-Encoding", "gzip")).execute();
+        assertEquals("gzip", raw.header("Content-Encoding"));
+        assertEquals(gzipped.size(), raw.body().bytes().length);
+
+        Assumptions.assumeTrue(acceptEncoding.contains("zstd"), "zstd-jni is not available");
+        mockWebServer.enqueue(new MockResponse().setBody(new Buffer().write(Zstd.compress(json.getBytes(StandardCharsets.UTF_8))))
+                .setHeader("Content-Encoding", "zstd"));
+        assertEquals(json, HttpUtil.get(buildUrl("/zstd")).execute().body().string());
+    }
+
+    @Test
+    public void testH2cPriorKnowledge() throws Exception {
+        MockWebServer h2cServer = new MockWebServer();
+        h2cServer.setProtocols(Collections.singletonList(Protocol.H2_PRIOR_KNOWLEDGE));
+        h2cServer.start();
+        try {
+            HttpClientProfile client = HttpUtil.client("h2c", HttpClientConfig.builder()
+                    .h2cPriorKnowledge(true)
+                    .maxRequestsPerHost(16)
+                    .build());
+            h2cServer.enqueue(new MockResponse());
+            Response first = client.get(h2cServer.url("/warm").toString()).execute();
+            assertEquals(Protocol.H2_PRIOR_KNOWLEDGE, first.protocol());
+
+            // concurrent requests are multiplexed as streams on the one connection
+            List<CompletableFuture<Response>> responses = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                h2cServer.enqueue(new MockResponse().setBody("stream " + i).setHeadersDelay(200, TimeUnit.MILLISECONDS));
+            }
+            for (int i = 0; i < 4; i++) {
+                responses.add(client.get(h2cServer.url("/streams").toString()).executeAsync());
+            }
+            for (CompletableFuture<Response> response : responses) {
+                assertEquals(200, response.get(5, TimeUnit.SECONDS).code());
+            }
+            List<Integer> sequenceNumbers = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                sequenceNumbers.add(h2cServer.takeRequest().getSequenceNumber());
+            }
+            // streams are recorded as they complete
+            Collections.sort(sequenceNumbers);
+            assertEquals(Arrays.asList(0, 1, 2, 3, 4), sequenceNumbers);
+            assertEquals(1, client.stats().getConnections());
+        } finally {
+            h2cServer.shutdown();
+        }
+    }
+
+    @Test
+    public void testCachingDns() throws Exception {
+        AtomicInteger lookups = new AtomicInteger();
+        InetAddress server = InetAddress.getByName(mockWebServer.getHostName());
+        Dns stub = hostname -> {
+            lookups.incrementAndGet();
+            if (!"service.test".equals(hostname)) {
+                throw new UnknownHostException(hostname);
+            }
+            return Collections.singletonList(server);
+        };
+        CachingDns dns = CachingDns.builder()
+                .delegate(stub)
+                .ttlMillis(60_000)
+                .refreshAfterMillis(200)
+                .maxEntries(1)
+                .build();
+        HttpClientProfile client = HttpUtil.client("caching-dns", HttpClientConfig.builder().dns(dns).build());
+        String url = mockWebServer.url("/dns").newBuilder().host("service.test").build().toString();
+        mockWebServer.enqueue(new MockResponse().setBody("resolved"));
+        mockWebServer.enqueue(new MockResponse().setBody("cached"));
+
+        assertEquals("resolved", client.get(url).execute().body().string());
+        assertEquals(Collections.singletonList(server), dns.lookup("service.test"));
+        assertEquals(1, lookups.get());
+        assertEquals(1, dns.getMisses());
+
+        // an old entry is returned at once and refreshed in the background
+        Thread.sleep(250);
+        assertEquals(Collections.singletonList(server), dns.lookup("service.test"));
+        for (int i = 0; i < 100 && lookups.get() < 2; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, lookups.get());
+        assertEquals(1, dns.getRefreshes());
+        assertEquals("cached", client.get(url).execute().body().string());
+
+        // failures are cached too, and the bounded cache keeps only the latest host
+        assertThrows(UnknownHostException.class, () -> dns.lookup("unknown.test"));
+        assertThrows(UnknownHostException.class, () -> dns.lookup("unknown.test"));
+        assertEquals(3, lookups.get());
+        assertEquals(1, dns.size());
+    }
+
+    @Test
+    public void testWarmUp() throws Exception {
+        mockWebServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                // a HEAD response has no body
+                return "HEAD".equals(request.getMethod()) ? new MockResponse() : new MockResponse().setBody("warm");
+            }
+        });
+        HttpClientProfile client = HttpUtil.client("warm-up");
+
+        assertEquals(3, client.warmUp(Collections.singletonList(buildUrl("/")), 3));
+        assertEquals(3, client.stats().getIdleConnections());
+        for (int i = 0; i < 3; i++) {
+            assertEquals("HEAD", mockWebServer.takeRequest().getMethod());
+        }
+
+        // the first requests after start-up skip the handshake
+        List<CompletableFuture<Response>> responses = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            responses.add(client.get(buildUrl("/first")).executeAsync());
+        }
+        for (CompletableFuture<Response> response : responses) {
+            assertEquals("warm", response.get(5, TimeUnit.SECONDS).body().string());
+        }
+        for (int i = 0; i < 3; i++) {
+            assertEquals(1, mockWebServer.takeRequest().getSequenceNumber());
+        }
+        assertEquals(3, client.stats().getConnections());
+
+        // URLs of one host share its connections, and an unreachable host is skipped
+        HttpClientProfile hosts = HttpUtil.client("warm-up-hosts");
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> assertEquals(2,
+                hosts.warmUp(Arrays.asList(buildUrl("/a"), buildUrl("/b"), "http://127.0.0.2:1/"), 2)));
+        assertEquals(2, hosts.stats().getIdleConnections());
+    }
+
+    @Test
+    public void testExecuteAsyncOnExecutor() throws Exception {
+        mockWebServer.enqueue(new MockResponse().setBody("from executor"));
+        mockWebServer.enqueue(new MockResponse().setBody("from profile executor"));
+        ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "blocking-call"));
+        try {
+            AtomicReference<String> thread = new AtomicReference<>();
+            Response response = HttpUtil.get(buildUrl("/executor"))
+                    .executeAsync(r -> executor.execute(() -> {
+                        thread.set(Thread.currentThread().getName());
+                        r.run();
+                    }))
+                    .get();
+            assertEquals("from executor", response.body().string());
+            assertEquals("blocking-call", thread.get());
+
+            HttpClientProfile profile = HttpUtil.client("executor-profile", HttpClientConfig.builder().asyncExecutor(executor).build());
+            assertEquals("from profile executor", profile.get(buildUrl("/executor")).executeAsync().get().body().string());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testVirtualThreadExecutor() throws Exception {
+        ExecutorService executor;
+        try {
+            executor = HttpUtil.virtualThreadExecutor();
+        } catch (UnsupportedOperationException e) {
+            Assumptions.abort("virtual threads are not available on this JDK");
+            return;
+        }
+        mockWebServer.enqueue(new MockResponse().setBody("virtual"));
+        try {
+            assertEquals("virtual", HttpUtil.get(buildUrl("/virtual")).executeAsync(executor).get().body().string());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     @Test
     public void testExecuteAsyncNetworkError() {
         String url = "http://localhost:9999"; // Invalid URL to simulate network error
@@ -175,6 +1117,254 @@ class HttpUtilTest {
         assertThrows(Exception.class, futureResponse::get);
     }
 
+    @Test
+    public void testExecuteStreaming() throws Exception {
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(200)
+                .setChunkedBody("streamed body", 4));
+
+        try (StreamingResponse response = HttpUtil.get(buildUrl("/stream")).executeStreaming()) {
+            assertEquals(200, response.code());
+            assertEquals(-1, response.contentLength());
+            assertEquals("streamed body", response.source().readUtf8());
+        }
+    }
+
+    @Test
+    public void testExecuteStreamingAsync() throws Exception {
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(200)
+                .setBody("streamed body"));
+
+        try (StreamingResponse response = HttpUtil.get(buildUrl("/stream")).executeStreamingAsync().get()) {
+            assertTrue(response.isSuccessful());
+            assertEquals("streamed body", response.source().readUtf8());
+        }
+    }
+
+    @Test
+    public void testExecuteStreamingDoesNotWaitForBody() {
+        // 32 KiB at 1 KiB per 100 ms: buffering the body, e.g. for the debug log, would take over 3 seconds
+        byte[] data = new byte[32 * 1024];
+        for (int i = 0; i < 2; i++) {
+            mockWebServer.enqueue(new MockResponse()
+                    .setBody(new Buffer().write(data))
+                    .throttleBody(1024, 100, TimeUnit.MILLISECONDS));
+        }
+        HttpUtil.setLogLevel("DEBUG");
+
+        assertTimeoutPreemptively(Duration.ofSeconds(1), () -> {
+            try (StreamingResponse response = HttpUtil.get(buildUrl("/stream")).executeStreaming()) {
+                assertEquals(0, response.source().readByte());
+            }
+            try (StreamingResponse response = HttpUtil.get(buildUrl("/stream")).executeStreamingAsync().get()) {
+                assertEquals(0, response.source().readByte());
+            }
+        });
+    }
+
+    @Test
+    public void testDownloadTo(@TempDir Path tempDir) throws Exception {
+        byte[] data = new byte[200 * 1024];
+        new Random(42).nextBytes(data);
+        mockWebServer.enqueue(new MockResponse().setBody(new Buffer().write(data)));
+
+        ch.qos.logback.classic.Logger logger = (ch.qos.logback.classic.Logger) LoggerFactory.getLogger(HttpUtil.class);
+        ListAppender<ILoggingEvent> appender = new ListAppender<>();
+        appender.start();
+        logger.addAppender(appender);
+        Path target = tempDir.resolve("download.bin");
+        long written;
+        try {
+            HttpUtil.setLogLevel("DEBUG");
+            written = HttpUtil.get(buildUrl("/download")).downloadTo(target);
+        } finally {
+            logger.detachAppender(appender);
+        }
+
+        assertEquals(data.length, written);
+        assertArrayEquals(data, Files.readAllBytes(target));
+        // the body goes straight to the file, not through the debug log
+        assertTrue(appender.list.stream().anyMatch(e -> e.getFormattedMessage().equals("<-- END HTTP (streamed body omitted)")));
+    }
+
+    @Test
+    public void testDownloadRetries(@TempDir Path tempDir) throws Exception {
+        RetryPolicy policy = RetryPolicy.builder().maxAttempts(2).initialBackoffMillis(10).maxBackoffMillis(50).build();
+        mockWebServer.enqueue(new MockResponse().setResponseCode(503));
+        mockWebServer.enqueue(new MockResponse().setBody("downloaded"));
+        mockWebServer.enqueue(new MockResponse().setResponseCode(503));
+        mockWebServer.enqueue(new MockResponse().setBody("resumed"));
+
+        Path target = tempDir.resolve("download.txt");
+        assertEquals(10, HttpUtil.get(buildUrl("/download")).retry(policy).downloadToAsync(target).get());
+        assertEquals("downloaded", new String(Files.readAllBytes(target), StandardCharsets.UTF_8));
+
+        Path resumable = tempDir.resolve("resumable.txt");
+        assertEquals(7, HttpUtil.get(buildUrl("/download")).retry(policy).downloadResumable(resumable));
+        assertEquals("resumed", new String(Files.readAllBytes(resumable), StandardCharsets.UTF_8));
+        assertEquals(4, mockWebServer.getRequestCount());
+    }
+
+    @Test
+    public void testDownloadToAsync(@TempDir Path tempDir) throws Exception {
+        mockWebServer.enqueue(new MockResponse().setBody("file content"));
+
+        Path target = tempDir.resolve("download.txt");
+        long written = HttpUtil.get(buildUrl("/download")).downloadToAsync(target).get();
+
+        assertEquals(12, written);
+        assertEquals("file content", new String(Files.readAllBytes(target), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testDownloadToErrorStatus(@TempDir Path tempDir) {
+        mockWebServer.enqueue(new MockResponse().setResponseCode(404).setBody("not found"));
+
+        Path target = tempDir.resolve("missing.txt");
+        assertThrows(IOException.class, () -> HttpUtil.get(buildUrl("/missing")).downloadTo(target));
+        assertFalse(Files.exists(target));
+    }
+
+    @Test
+    public void testParallelDownload(@TempDir Path tempDir) throws Exception {
+        byte[] data = new byte[4 * 1024 * 1024 + 123];
+        new Random(7).nextBytes(data);
+        mockWebServer.setDispatcher(rangeDispatcher(data, true));
+
+        Path target = tempDir.resolve("parallel.bin");
+        long written = HttpUtil.get(buildUrl("/blob")).downloadTo(target, 4);
+
+        assertEquals(data.length, written);
+        assertArrayEquals(data, Files.readAllBytes(target));
+        // one probe plus one request per segment
+        assertEquals(5, mockWebServer.getRequestCount());
+    }
+
+    @Test
+    public void testParallelDownloadCleansUp(@TempDir Path tempDir) throws Exception {
+        byte[] data = new byte[4 * 1024 * 1024];
+        Dispatcher ranges = rangeDispatcher(data, true);
+        AtomicBoolean failLastSegment = new AtomicBoolean(true);
+        mockWebServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                String range = request.getHeader("Range");
+                if (failLastSegment.get() && range.startsWith("bytes=3145728-")) {
+                    return new MockResponse().setResponseCode(404);
+                }
+                MockResponse response = ranges.dispatch(request);
+                // the other segments take 16 seconds
+                return "bytes=0-0".equals(range) ? response : response.throttleBody(64 * 1024, 1, TimeUnit.SECONDS);
+            }
+        });
+        Path target = tempDir.resolve("parallel.bin");
+
+        // a failed segment cancels the others and removes the pre-sized file
+        assertTimeoutPreemptively(Duration.ofSeconds(5),
+                () -> assertThrows(IOException.class, () -> HttpUtil.get(buildUrl("/blob")).downloadTo(target, 4)));
+        assertFalse(Files.exists(target));
+
+        // so does interrupting the caller
+        failLastSegment.set(false);
+        int requests = mockWebServer.getRequestCount();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread downloader = new Thread(() -> {
+            try {
+                HttpUtil.get(buildUrl("/blob")).downloadTo(target, 4);
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        });
+        downloader.start();
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            while (mockWebServer.getRequestCount() < requests + 5) {
+                Thread.sleep(10);
+            }
+            downloader.interrupt();
+            downloader.join();
+        });
+        assertInstanceOf(InterruptedIOException.class, failure.get());
+        assertFalse(Files.exists(target));
+    }
+
+    @Test
+    public void testParallelDownloadFallsBackWithoutRanges(@TempDir Path tempDir) throws Exception {
+        byte[] data = new byte[3 * 1024 * 1024];
+        new Random(9).nextBytes(data);
+        mockWebServer.setDispatcher(rangeDispatcher(data, false));
+
+        Path target = tempDir.resolve("single.bin");
+        long written = HttpUtil.get(buildUrl("/blob")).downloadToAsync(target, 4).get();
+
+        assertEquals(data.length, written);
+        assertArrayEquals(data, Files.readAllBytes(target));
+        assertEquals(1, mockWebServer.getRequestCount());
+    }
+
+    @Test
+    public void testResumableDownload(@TempDir Path tempDir) throws Exception {
+        byte[] data = new byte[512 * 1024];
+        new Random(11).nextBytes(data);
+        String url = buildUrl("/resumable");
+        // state left behind by an attempt that died after 100000 bytes
+        Files.write(tempDir.resolve("resumable.bin.part"), Arrays.copyOf(data, 100000));
+        writeCheckpoint(tempDir.resolve("resumable.bin.part.checkpoint"), url, "\"v1\"", 100000);
+        mockWebServer.setDispatcher(rangeDispatcher(data, true));
+
+        Path target = tempDir.resolve("resumable.bin");
+        long size = HttpUtil.get(url).downloadResumable(target);
+
+        RecordedRequest resumed = mockWebServer.takeRequest();
+        assertEquals("bytes=100000-", resumed.getHeader("Range"));
+        assertEquals("\"v1\"", resumed.getHeader("If-Range"));
+        assertEquals(data.length, size);
+        assertArrayEquals(data, Files.readAllBytes(target));
+        assertFalse(Files.exists(tempDir.resolve("resumable.bin.part")));
+        assertFalse(Files.exists(tempDir.resolve("resumable.bin.part.checkpoint")));
+    }
+
+    @Test
+    public void testResumableDownloadAfterDisconnect(@TempDir Path tempDir) throws Exception {
+        // the connection drops within the debug log's body limit, which must not read the body ahead of the file
+        byte[] data = new byte[48 * 1024];
+        new Random(13).nextBytes(data);
+        mockWebServer.enqueue(new MockResponse()
+                .setHeader("ETag", "\"v1\"")
+                .setBody(new Buffer().write(data))
+                .setSocketPolicy(SocketPolicy.DISCONNECT_DURING_RESPONSE_BODY));
+        HttpUtil.setLogLevel("DEBUG");
+
+        Path target = tempDir.resolve("interrupted.bin");
+        String url = buildUrl("/interrupted");
+        assertThrows(IOException.class, () -> HttpUtil.get(url).downloadResumable(target));
+        assertFalse(Files.exists(target));
+        assertTrue(Files.exists(tempDir.resolve("interrupted.bin.part.checkpoint")));
+        mockWebServer.takeRequest();
+
+        mockWebServer.setDispatcher(rangeDispatcher(data, true));
+        long size = HttpUtil.get(url).downloadResumable(target);
+
+        assertTrue(mockWebServer.takeRequest().getHeader("Range").matches("bytes=[1-9]\\d*-"));
+        assertEquals(data.length, size);
+        assertArrayEquals(data, Files.readAllBytes(target));
+    }
+
+    @Test
+    public void testResumableDownloadRestartsWhenChanged(@TempDir Path tempDir) throws Exception {
+        byte[] data = "new content".getBytes(StandardCharsets.UTF_8);
+        Files.write(tempDir.resolve("changed.txt.part"), "old".getBytes(StandardCharsets.UTF_8));
+        writeCheckpoint(tempDir.resolve("changed.txt.part.checkpoint"), buildUrl("/changed"), "\"v0\"", 3);
+        mockWebServer.enqueue(new MockResponse().setHeader("ETag", "\"v2\"").setBody(new Buffer().write(data)));
+
+        Path target = tempDir.resolve("changed.txt");
+        long size = HttpUtil.get(buildUrl("/changed")).downloadResumableAsync(target).get();
+
+        assertEquals("bytes=3-", mockWebServer.takeRequest().getHeader("Range"));
+        assertEquals(data.length, size);
+        assertArrayEquals(data, Files.readAllBytes(target));
+    }
+
     @Test
     public void testReadTimeoutSucceed() throws Exception {
         mockWebServer.enqueue(new MockResponse().setBody("response body").setBodyDelay(3, TimeUnit.SECONDS));
@@ -204,12 +1394,90 @@ class HttpUtilTest {
         }
     }
 
+    @Test
+    public void testDebugLogBodyLimit() throws Exception {
+        ch.qos.logback.classic.Logger logger = (ch.qos.logback.classic.Logger) LoggerFactory.getLogger(HttpUtil.class);
+        ListAppender<ILoggingEvent> appender = new ListAppender<>();
+        appender.start();
+        logger.addAppender(appender);
+        String largeBody = new String(new char[100]).replace('\0', 'x');
+        mockWebServer.enqueue(new MockResponse().setBody(largeBody));
+        mockWebServer.enqueue(new MockResponse().setBody("quiet"));
+        try {
+            HttpUtil.setLogLevel("DEBUG");
+            HttpUtil.setLogBodyLimit(16);
+            Response response = HttpUtil.post(buildUrl("/log")).body(largeBody).execute();
+            assertEquals(largeBody, response.body().string());
+            assertTrue(appender.list.stream().anyMatch(e -> e.getFormattedMessage().equals("--> END POST (100-byte body omitted)")));
+            assertTrue(appender.list.stream().anyMatch(e -> e.getFormattedMessage().equals("<-- END HTTP (body truncated to 16 bytes)")));
+
+            appender.list.clear();
+            HttpUtil.setLogLevel("INFO");
+            HttpUtil.get(buildUrl("/quiet")).execute();
+            assertTrue(appender.list.isEmpty());
+        } finally {
+            HttpUtil.setLogBodyLimit(64 * 1024);
+            HttpUtil.setLogLevel("DEBUG");
+            logger.detachAppender(appender);
+        }
+    }
+
+    @Test
+    public void testDebugLogOmitsStreamedBody() throws Exception {
+        ch.qos.logback.classic.Logger logger = (ch.qos.logback.classic.Logger) LoggerFactory.getLogger(HttpUtil.class);
+        ListAppender<ILoggingEvent> appender = new ListAppender<>();
+        appender.start();
+        logger.addAppender(appender);
+        mockWebServer.enqueue(new MockResponse().setBody("streamed body"));
+        try {
+            HttpUtil.setLogLevel("DEBUG");
+            try (StreamingResponse response = HttpUtil.get(buildUrl("/stream")).executeStreaming()) {
+                assertEquals("streamed body", response.source().readUtf8());
+            }
+            assertTrue(appender.list.stream().anyMatch(e -> e.getFormattedMessage().equals("<-- END HTTP (streamed body omitted)")));
+            assertTrue(appender.list.stream().noneMatch(e -> e.getFormattedMessage().equals("streamed body")));
+        } finally {
+            logger.detachAppender(appender);
+        }
+    }
+
     @Test
     public void testLogLevel() throws Exception {
         HttpUtil.setLogLevel("debug");
         HttpUtil.get("https://www.baidu.com").execute();
     }
 
+    private static Dispatcher rangeDispatcher(byte[] data, boolean acceptRanges) {
+        return new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String range = request.getHeader("Range");
+                if (!acceptRanges || range == null) {
+                    return new MockResponse().setBody(new Buffer().write(data));
+                }
+                String[] bounds = range.substring("bytes=".length()).split("-", -1);
+                int start = Integer.parseInt(bounds[0]);
+                int end = bounds[1].isEmpty() ? data.length - 1 : Integer.parseInt(bounds[1]);
+                return new MockResponse()
+                        .setResponseCode(206)
+                        .setHeader("Accept-Ranges", "bytes")
+                        .setHeader("ETag", "\"v1\"")
+                        .setHeader("Content-Range", "bytes " + start + "-" + end + "/" + data.length)
+                        .setBody(new Buffer().write(data, start, end - start + 1));
+            }
+        };
+    }
+
+    private static void writeCheckpoint(Path file, String url, String validator, long bytesCompleted) throws IOException {
+        Properties checkpoint = new Properties();
+        checkpoint.setProperty("url", url);
+        checkpoint.setProperty("validator", validator);
+        checkpoint.setProperty("bytesCompleted", String.valueOf(bytesCompleted));
+        try (OutputStream out = Files.newOutputStream(file)) {
+            checkpoint.store(out, null);
+        }
+    }
+
     private String buildUrl(String path) {
         String host = mockWebServer.getHostName();
         int port = mockWebServer.getPort();